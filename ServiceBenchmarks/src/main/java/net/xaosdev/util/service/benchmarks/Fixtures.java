@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.benchmarks;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * The fixtures shared by the benchmarks, taken from the jars exported by the Test Artifacts project.
+ *
+ * Paths are relative to the ServiceBenchmarks directory, which the jmh task runs the benchmarks from.
+ */
+final class Fixtures {
+
+    //region Fields (Package-Private)
+
+    /**
+     * The directory of exported implementation jars, including a child directory and a few invalid files.
+     */
+    static final File EXPORTED = new File("../Test Artifacts/build/exported");
+
+    /**
+     * A jar declaring a single provider of the test SPI.
+     */
+    static final File IMPL_1 = new File(EXPORTED, "Test Impl 1.jar");
+
+    //endregion
+
+    //region Constructors (Private)
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Fixtures() {}
+
+    //endregion
+
+    //region Interface (Package-Private)
+
+    /**
+     * Creates a ClassLoader loading from the jar declaring a single provider.
+     * @return the new ClassLoader, a child of the system ClassLoader.
+     * @throws IllegalStateException if the fixtures have not been exported.
+     */
+    static URLClassLoader newImplClassLoader() {
+        if (!IMPL_1.isFile()) {
+            throw new IllegalStateException("Fixture missing, run ':Test Artifacts:processTestResources': " + IMPL_1);
+        }
+        try {
+            return new URLClassLoader(new URL[] { IMPL_1.toURI().toURL() });
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //endregion
+}
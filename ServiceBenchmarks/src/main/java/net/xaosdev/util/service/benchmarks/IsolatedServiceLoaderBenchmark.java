@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.benchmarks;
+
+import net.xaosdev.util.service.Source;
+import net.xaosdev.util.service.internal.IsolatedServiceLoader;
+import net.xaosdev.util.service.sources.ClassLoaderSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import testing.producer.spi.TestService;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks iterating over the providers of a single Source with an IsolatedServiceLoader.
+ *
+ * A warm loader has already read the descriptors of its Source and instantiated its providers, whereas a cold loader
+ * is created for each invocation and so reads the descriptors, and loads the provider classes, every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IsolatedServiceLoaderBenchmark {
+
+    //region Fields (Private)
+
+    /**
+     * The ClassLoader of the Source.
+     */
+    private URLClassLoader classLoader;
+
+    /**
+     * The Source iterated over.
+     */
+    private Source source;
+
+    /**
+     * A loader that has already discovered and instantiated the providers of the Source.
+     */
+    private IsolatedServiceLoader<TestService> warm;
+
+    //endregion
+
+    //region Setup
+
+    /**
+     * Creates the Source and warms a loader up.
+     */
+    @Setup
+    public void setUp() {
+        classLoader = Fixtures.newImplClassLoader();
+        source = new ClassLoaderSource(classLoader);
+        warm = IsolatedServiceLoader.load(TestService.class, source);
+        warm.forEach(TestService::returnTrue);
+    }
+
+    /**
+     * Releases the ClassLoader of the Source.
+     * @throws IOException if the ClassLoader could not be closed.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        classLoader.close();
+    }
+
+    //endregion
+
+    //region Benchmarks
+
+    /**
+     * Iterates over the providers of a loader that has already discovered them.
+     * @param blackhole consumes the providers.
+     */
+    @Benchmark
+    public void iterateWarm(final Blackhole blackhole) {
+        for (TestService service : warm) {
+            blackhole.consume(service);
+        }
+    }
+
+    /**
+     * Creates a loader, then iterates over the providers it discovers.
+     * @param blackhole consumes the providers.
+     */
+    @Benchmark
+    public void iterateCold(final Blackhole blackhole) {
+        for (TestService service : IsolatedServiceLoader.load(TestService.class, source)) {
+            blackhole.consume(service);
+        }
+    }
+
+    /**
+     * Creates a loader, then enumerates the handles of the providers it discovers without loading any of them.
+     * @param blackhole consumes the handles.
+     */
+    @Benchmark
+    public void handlesCold(final Blackhole blackhole) {
+        IsolatedServiceLoader.load(TestService.class, source).getHandles().forEach(blackhole::consume);
+    }
+
+    //endregion
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.benchmarks;
+
+import net.xaosdev.util.service.Source;
+import net.xaosdev.util.service.sources.JarFileSourceCreator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks scanning the exported fixture directory, including its child directory and invalid files, for plugin
+ * jars.
+ *
+ * Every created source is closed again, so that the jars are not left open between invocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JarFileSourceCreatorBenchmark {
+
+    //region Fields (Private)
+
+    /**
+     * The Executor used by asynchronous scans.
+     */
+    private ExecutorService executor;
+
+    //endregion
+
+    //region Setup
+
+    /**
+     * Creates the Executor used by asynchronous scans.
+     */
+    @Setup
+    public void setUp() {
+        if (!Fixtures.EXPORTED.isDirectory()) {
+            throw new IllegalStateException("Fixtures missing, run ':Test Artifacts:processTestResources'.");
+        }
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    /**
+     * Shuts the Executor down.
+     */
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    //endregion
+
+    //region Benchmarks
+
+    /**
+     * Scans the directory on the calling thread, creating one ClassLoader per jar.
+     * @return the number of sources created.
+     * @throws IOException if a source could not be closed.
+     */
+    @Benchmark
+    public int scan() throws IOException {
+        return close(JarFileSourceCreator.tryCreateSourceFromFilesInDirectory(Fixtures.EXPORTED, true));
+    }
+
+    /**
+     * Scans the directory on the calling thread, creating a single ClassLoader shared by every jar.
+     * @return the number of sources created.
+     * @throws IOException if a source could not be closed.
+     */
+    @Benchmark
+    public int scanShared() throws IOException {
+        return close(JarFileSourceCreator.tryCreateSharedSourcesFromFilesInDirectory(Fixtures.EXPORTED, true));
+    }
+
+    /**
+     * Scans the directory with the Executor, validating up to four files at once.
+     * @return the number of sources created.
+     * @throws IOException if a source could not be closed.
+     */
+    @Benchmark
+    public int scanAsync() throws IOException {
+        return close(JarFileSourceCreator.tryCreateSourceFromFilesInDirectoryAsync(Fixtures.EXPORTED, true, executor,
+                4, null).join());
+    }
+
+    //endregion
+
+    //region Interface (Private)
+
+    /**
+     * Closes every created source.
+     * @param sources the created sources.
+     * @return the number of sources closed.
+     * @throws IOException if a source could not be closed.
+     */
+    private static int close(final List<Source> sources) throws IOException {
+        for (Source source : sources) {
+            source.close();
+        }
+        return sources.size();
+    }
+
+    //endregion
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.benchmarks;
+
+import net.xaosdev.util.service.Service;
+import net.xaosdev.util.service.Source;
+import net.xaosdev.util.service.sources.ClassLoaderSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import testing.producer.spi.TestService;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks adding sources to, and streaming the providers of, a Service holding 1, 100 or 10,000 sources.
+ *
+ * Every source shares one ClassLoader over the jar declaring a single provider, so the cost measured is that of the
+ * Service itself rather than of class loading.  The providers of every source are discovered and instantiated during
+ * setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceBenchmark {
+
+    //region Fields (Public)
+
+    /**
+     * The number of sources held by the Service.
+     */
+    @Param({"1", "100", "10000"})
+    public int sources;
+
+    //endregion
+
+    //region Fields (Private)
+
+    /**
+     * The ClassLoader shared by every source.
+     */
+    private URLClassLoader classLoader;
+
+    /**
+     * The Service under test.
+     */
+    private Service<TestService> service;
+
+    /**
+     * A source that is not held by the Service between invocations.
+     */
+    private Source extra;
+
+    //endregion
+
+    //region Setup
+
+    /**
+     * Creates the Service and discovers the providers of its sources.
+     */
+    @Setup
+    public void setUp() {
+        classLoader = Fixtures.newImplClassLoader();
+        service = new Service<>(TestService.class);
+        for (int index = 0; index < sources; index++) {
+            service.addSource(new ClassLoaderSource(classLoader));
+        }
+        extra = new ClassLoaderSource(classLoader);
+        if (service.getServiceStream().count() != sources) {
+            throw new IllegalStateException("Expected one provider per source.");
+        }
+    }
+
+    /**
+     * Releases the ClassLoader shared by the sources.
+     * @throws IOException if the ClassLoader could not be closed.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        classLoader.close();
+    }
+
+    //endregion
+
+    //region Benchmarks
+
+    /**
+     * Adds a source to, then removes it from, the Service; each publishes a new snapshot of the sources.
+     * @return the version of the Service afterwards.
+     */
+    @Benchmark
+    public long addAndRemoveSource() {
+        service.addSource(extra);
+        service.removeSource(extra);
+        return service.getVersion();
+    }
+
+    /**
+     * Streams every provider instance of the Service.
+     * @param blackhole consumes the instances.
+     */
+    @Benchmark
+    public void getServiceStream(final Blackhole blackhole) {
+        service.getServiceStream().forEach(blackhole::consume);
+    }
+
+    /**
+     * Streams every provider instance of the Service in parallel.
+     * @param blackhole consumes the instances.
+     */
+    @Benchmark
+    public void getParallelServiceStream(final Blackhole blackhole) {
+        service.getParallelServiceStream().forEach(blackhole::consume);
+    }
+
+    /**
+     * Streams the handles of every provider of the Service without instantiating any.
+     * @param blackhole consumes the handles.
+     */
+    @Benchmark
+    public void getProviderHandles(final Blackhole blackhole) {
+        service.getProviderHandles().forEach(blackhole::consume);
+    }
+
+    //endregion
+}
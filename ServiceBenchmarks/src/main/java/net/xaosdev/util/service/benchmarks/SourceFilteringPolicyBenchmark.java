@@ -0,0 +1,210 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.benchmarks;
+
+import net.xaosdev.util.service.Service;
+import net.xaosdev.util.service.Source;
+import net.xaosdev.util.service.security.Security;
+import net.xaosdev.util.service.security.ServiceUtilityPermission;
+import net.xaosdev.util.service.security.SourceFilteringPolicy;
+import net.xaosdev.util.service.sources.ClassLoaderSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import testing.producer.spi.TestService;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.AccessControlContext;
+import java.security.AccessController;
+import java.security.CodeSource;
+import java.security.Permission;
+import java.security.Permissions;
+import java.security.Policy;
+import java.security.PrivilegedAction;
+import java.security.ProtectionDomain;
+import java.security.cert.Certificate;
+import java.util.PropertyPermission;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks permission checks made against a SourceFilteringPolicy, with and without a SecurityManager installed.
+ *
+ * A plugin ClassLoader is granted a single permission, and checks are made both directly against the policy and from
+ * within an AccessControlContext holding only the plugin's domain.  Without a SecurityManager, a Service performs no
+ * checks at all, which gives the baseline the cost of a checked Service call is measured against.  JMH forks a new
+ * JVM for each value of `securityManager`, so the SecurityManager never leaks into another benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SourceFilteringPolicyBenchmark {
+
+    //region Fields (Public)
+
+    /**
+     * Whether or not a SecurityManager is installed.
+     */
+    @Param({"false", "true"})
+    public boolean securityManager;
+
+    //endregion
+
+    //region Fields (Private)
+
+    /**
+     * The permission granted to the plugin.
+     */
+    private static final Permission GRANTED = new PropertyPermission("java.version", "read");
+
+    /**
+     * A permission not granted to the plugin.
+     */
+    private static final Permission DENIED = new PropertyPermission("user.home", "read");
+
+    /**
+     * The policy under test.
+     */
+    private SourceFilteringPolicy policy;
+
+    /**
+     * The ClassLoader of the plugin.
+     */
+    private URLClassLoader pluginClassLoader;
+
+    /**
+     * The ProtectionDomain of the plugin.
+     */
+    private ProtectionDomain pluginDomain;
+
+    /**
+     * An AccessControlContext holding only the ProtectionDomain of the plugin.
+     */
+    private AccessControlContext pluginContext;
+
+    /**
+     * The Service accessed by checked calls.
+     */
+    private Service<TestService> service;
+
+    //endregion
+
+    //region Setup
+
+    /**
+     * Grants the plugin its permissions and installs the policy, along with a SecurityManager if required.
+     */
+    @Setup
+    public void setUp() {
+        pluginClassLoader = new URLClassLoader(new URL[0]);
+        final Source plugin = new ClassLoaderSource(pluginClassLoader);
+        pluginDomain = new ProtectionDomain(new CodeSource(null, (Certificate[]) null), null, pluginClassLoader, null);
+        pluginContext = new AccessControlContext(new ProtectionDomain[] { pluginDomain });
+
+        final Permissions permissions = new Permissions();
+        permissions.add(GRANTED);
+        permissions.add(new ServiceUtilityPermission(ServiceUtilityPermission.Type.ACCESS));
+        policy = new SourceFilteringPolicy();
+        policy.setPermissions(plugin, permissions);
+
+        service = new Service<>(TestService.class);
+        if (securityManager) {
+            Security.installWithPolicy(policy);
+        } else {
+            Policy.setPolicy(policy);
+        }
+    }
+
+    /**
+     * Removes the SecurityManager, if installed, and releases the plugin's ClassLoader.
+     * @throws IOException if the ClassLoader could not be closed.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        if (securityManager) {
+            System.setSecurityManager(null);
+        }
+        pluginClassLoader.close();
+    }
+
+    //endregion
+
+    //region Benchmarks
+
+    /**
+     * Asks the policy whether the plugin holds a granted permission.
+     * @return the decision of the policy.
+     */
+    @Benchmark
+    public boolean impliesGranted() {
+        return policy.implies(pluginDomain, GRANTED);
+    }
+
+    /**
+     * Asks the policy whether the plugin holds a permission it was not granted.
+     * @return the decision of the policy.
+     */
+    @Benchmark
+    public boolean impliesDenied() {
+        return policy.implies(pluginDomain, DENIED);
+    }
+
+    /**
+     * Checks a granted permission through the AccessController from within the plugin's context.
+     * @return true, once the check has passed.
+     */
+    @Benchmark
+    public boolean checkPermissionFromPlugin() {
+        return AccessController.doPrivileged((PrivilegedAction<Boolean>) () -> {
+            AccessController.checkPermission(GRANTED);
+            return true;
+        }, pluginContext);
+    }
+
+    /**
+     * Calls a Service method, which checks its caller's permission only when a SecurityManager is installed.
+     * @return the version of the Service.
+     */
+    @Benchmark
+    public long serviceAccess() {
+        return service.getVersion();
+    }
+
+    /**
+     * Calls a Service method from within the plugin's context.
+     * @return the version of the Service.
+     */
+    @Benchmark
+    public long serviceAccessFromPlugin() {
+        return AccessController.doPrivileged((PrivilegedAction<Long>) service::getVersion, pluginContext);
+    }
+
+    //endregion
+}
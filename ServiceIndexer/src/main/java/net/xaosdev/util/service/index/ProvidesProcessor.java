@@ -0,0 +1,251 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.index;
+
+import net.xaosdev.util.service.ProviderIndex;
+import net.xaosdev.util.service.Provides;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * An annotation processor generating provider-configuration files and a provider index for classes annotated with
+ * Provides.
+ *
+ * For every service named by a Provides annotation, a standard "META-INF/services/..." file is generated so that the
+ * output remains usable by a plain java.util.ServiceLoader.  Additionally, a single ProviderIndex listing every
+ * service and provider is generated so that ServiceUtils can discover all the providers of a jar by reading one
+ * resource.
+ *
+ * Note that a project using this processor should not also declare provider-configuration files for the same services
+ * by hand, as the generated files would collide with them when packaged.
+ */
+@SupportedAnnotationTypes("net.xaosdev.util.service.Provides")
+public final class ProvidesProcessor extends AbstractProcessor {
+
+    //region Fields (Private)
+
+    /**
+     * The directory, within the class output, that provider-configuration files are generated in.
+     */
+    private static final String SERVICES_DIRECTORY = "META-INF/services/";
+
+    /**
+     * The providers found so far, by service, across all processing rounds.
+     */
+    private final SortedMap<String, SortedSet<String>> providers = new TreeMap<>();
+
+    //endregion
+
+    //region Interface (AbstractProcessor)
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!providers.isEmpty()) {
+                generate();
+            }
+            return false;
+        }
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(Provides.class)) {
+            if (validateProvider(element)) {
+                final TypeElement provider = (TypeElement) element;
+                final String name = processingEnv.getElementUtils().getBinaryName(provider).toString();
+                for (TypeElement service : getServices(provider)) {
+                    if (validateImplements(provider, service)) {
+                        final String serviceName = processingEnv.getElementUtils().getBinaryName(service).toString();
+                        providers.computeIfAbsent(serviceName, key -> new TreeSet<>()).add(name);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    //endregion
+
+    //region Interface (Private)
+
+    /**
+     * Validates that an annotated element may be instantiated by a ServiceLoader.
+     * @param element the annotated element.
+     * @return true if the element is a public, concrete class with a public no-argument constructor.
+     */
+    private boolean validateProvider(final Element element) {
+        if (element.getKind() != ElementKind.CLASS) {
+            return error(element, "Only classes may be annotated with @Provides.");
+        }
+
+        final Set<Modifier> modifiers = element.getModifiers();
+        if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.ABSTRACT)) {
+            return error(element, "Providers must be public, concrete classes.");
+        }
+        if (element.getEnclosingElement().getKind() != ElementKind.PACKAGE && !modifiers.contains(Modifier.STATIC)) {
+            return error(element, "Nested providers must be static.");
+        }
+
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return error(element, "Providers must have a public no-argument constructor.");
+    }
+
+    /**
+     * Validates that a provider implements a service it declares.
+     * @param provider the provider.
+     * @param service the service.
+     * @return true if the provider is assignable to the service.
+     */
+    private boolean validateImplements(final TypeElement provider, final TypeElement service) {
+        final TypeMirror providerType = processingEnv.getTypeUtils().erasure(provider.asType());
+        final TypeMirror serviceType = processingEnv.getTypeUtils().erasure(service.asType());
+        if (!processingEnv.getTypeUtils().isAssignable(providerType, serviceType)) {
+            return error(provider, "Provider does not implement " + service.getQualifiedName() + ".");
+        }
+        return true;
+    }
+
+    /**
+     * Gets the services named by the Provides annotation of a provider.
+     *
+     * The annotation mirror is used rather than the annotation itself as the classes it names may not have been
+     * compiled yet.
+     * @param provider the provider.
+     * @return the services the provider declares.
+     */
+    private List<TypeElement> getServices(final TypeElement provider) {
+        final List<TypeElement> services = new ArrayList<>();
+        for (AnnotationMirror mirror : provider.getAnnotationMirrors()) {
+            final TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (!type.getQualifiedName().contentEquals(Provides.class.getName())) {
+                continue;
+            }
+
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                    mirror.getElementValues().entrySet()) {
+                if (!entry.getKey().getSimpleName().contentEquals("value")) {
+                    continue;
+                }
+
+                final Object value = entry.getValue().getValue();
+                if (value instanceof List) {
+                    for (Object item : (List<?>) value) {
+                        addService(((AnnotationValue) item).getValue(), services);
+                    }
+                } else {
+                    addService(value, services);
+                }
+            }
+        }
+        return services;
+    }
+
+    /**
+     * Adds a service named by an annotation value to a list.
+     * @param value the value of the annotation, expected to be a type.
+     * @param services the list to add the service to.
+     */
+    private static void addService(final Object value, final List<TypeElement> services) {
+        if (value instanceof DeclaredType) {
+            services.add((TypeElement) ((DeclaredType) value).asElement());
+        }
+    }
+
+    /**
+     * Generates the provider-configuration files and the provider index.
+     */
+    private void generate() {
+        try {
+            for (Map.Entry<String, SortedSet<String>> entry : providers.entrySet()) {
+                final FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                        SERVICES_DIRECTORY + entry.getKey());
+                try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                    for (String provider : entry.getValue()) {
+                        writer.write(provider);
+                        writer.write('\n');
+                    }
+                }
+            }
+
+            final Map<String, List<String>> index = new TreeMap<>();
+            providers.forEach((service, names) -> index.put(service, new ArrayList<>(names)));
+            final FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    ProviderIndex.LOCATION);
+            try (OutputStream out = file.openOutputStream()) {
+                ProviderIndex.write(out, index);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write the provider index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reports an error against an element.
+     * @param element the offending element.
+     * @param message the error message.
+     * @return false, always, for convenience.
+     */
+    private boolean error(final Element element, final String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+        return false;
+    }
+
+    //endregion
+}
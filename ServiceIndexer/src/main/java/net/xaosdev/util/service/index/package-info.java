@@ -0,0 +1,4 @@
+/**
+ * Contains the build-time annotation processor generating provider indexes for ServiceUtils.
+ */
+package net.xaosdev.util.service.index;
\ No newline at end of file
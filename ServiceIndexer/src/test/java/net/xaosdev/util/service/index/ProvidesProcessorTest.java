@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.index;
+
+import net.xaosdev.util.service.ProviderIndex;
+import net.xaosdev.util.service.Service;
+import net.xaosdev.util.service.sources.URLSource;
+import org.junit.Before;
+import org.junit.Test;
+import testing.producer.spi.TestService;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ProvidesProcessorTest {
+
+    private static final String SERVICE = "testing.producer.spi.TestService";
+    private static final String PROVIDER = "testing.consumer.impl.IndexedServiceImpl";
+
+    private Path sources;
+    private Path classes;
+
+    @Before
+    public void setUp() throws Exception {
+        // Arrange - common
+        sources = Files.createTempDirectory("indexer-sources");
+        classes = Files.createTempDirectory("indexer-classes");
+    }
+
+    @Test
+    public void generatesIndexAndDescriptors() throws Exception {
+        // Arrange
+        writeProvider("public IndexedServiceImpl() {}");
+
+        // Act
+        final boolean compiled = compile();
+
+        // Assert
+        assert(compiled);
+        try (InputStream in = Files.newInputStream(classes.resolve(ProviderIndex.LOCATION))) {
+            final Map<String, List<String>> index = ProviderIndex.read(in);
+            assertEquals(Collections.singletonMap(SERVICE, Collections.singletonList(PROVIDER)), index);
+        }
+        final Path descriptor = classes.resolve("META-INF/services/" + SERVICE);
+        assertEquals(PROVIDER, new String(Files.readAllBytes(descriptor), StandardCharsets.UTF_8).trim());
+    }
+
+    @Test
+    public void indexAloneIsEnoughToLoadProviders() throws Exception {
+        // Arrange
+        writeProvider("public IndexedServiceImpl() {}");
+        assertTrue(compile());
+        Files.delete(classes.resolve("META-INF/services/" + SERVICE));
+        final Service<TestService> service = new Service<>(TestService.class);
+
+        // Act
+        service.addSource(new URLSource(classes.toUri().toURL()));
+
+        // Assert
+        assertEquals(1, service.getServiceStream().count());
+        assert(service.getServiceStream().allMatch(TestService::returnTrue));
+    }
+
+    @Test
+    public void rejectsProviderWithoutNoArgumentConstructor() throws Exception {
+        // Arrange
+        writeProvider("public IndexedServiceImpl(int value) {}");
+
+        // Act
+        final boolean compiled = compile();
+
+        // Assert
+        assertFalse(compiled);
+        assertFalse(Files.exists(classes.resolve(ProviderIndex.LOCATION)));
+    }
+
+    private void writeProvider(final String constructor) throws Exception {
+        final Path file = sources.resolve("testing/consumer/impl/IndexedServiceImpl.java");
+        Files.createDirectories(file.getParent());
+        final String source = "package testing.consumer.impl;\n" +
+                "@net.xaosdev.util.service.Provides(testing.producer.spi.TestService.class)\n" +
+                "public class IndexedServiceImpl implements testing.producer.spi.TestService {\n" +
+                "    " + constructor + "\n" +
+                "    public boolean returnTrue() { return true; }\n" +
+                "}\n";
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private boolean compile() {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        final int result = compiler.run(null, null, errors,
+                "-classpath", System.getProperty("java.class.path"),
+                "-processor", ProvidesProcessor.class.getName(),
+                "-d", classes.toString(),
+                sources.resolve("testing/consumer/impl/IndexedServiceImpl.java").toString());
+        return result == 0;
+    }
+}
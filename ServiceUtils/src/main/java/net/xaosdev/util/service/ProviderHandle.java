@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * A lightweight descriptor of a single service provider found within a Source.
+ *
+ * A handle is created from the provider-configuration files of a Source alone; neither loading the provider class
+ * nor instantiating it happens until it is asked for.  This allows providers to be selected (by name or Source, for
+ * instance) without paying for the construction of those that are not selected.
+ *
+ * The instance returned by `get` depends on the Scope of the Service the handle was obtained from.
+ * @param <T> the SPI the provider implements.
+ */
+public interface ProviderHandle<T> extends Supplier<T> {
+
+    /**
+     * Gets the fully qualified name of the provider class, as declared by its Source.
+     * @return the name of the provider class.
+     */
+    String getName();
+
+    /**
+     * Gets the UUID of the Source that declared this provider.
+     * @return the UUID of the Source that declared this provider.
+     */
+    UUID getSourceUUID();
+
+    /**
+     * Loads, without initializing or instantiating it, the provider class.
+     *
+     * The class is only loaded once, regardless of the number of calls to this method.
+     * @return the provider class.
+     * @throws java.util.ServiceConfigurationError if the class could not be loaded, does not implement the SPI, or is
+     *         not defined by the Source that declared it.
+     */
+    Class<? extends T> type();
+
+    /**
+     * Gets the priority of the provider, as declared by the Priority annotation of its class.
+     *
+     * The provider class is loaded, but not instantiated, if it has not been already.
+     * @return the priority of the provider, or zero if its class is not annotated.
+     * @throws java.util.ServiceConfigurationError if the class could not be loaded, does not implement the SPI, or is
+     *         not defined by the Source that declared it.
+     */
+    int getPriority();
+
+    /**
+     * Gets an instance of the provider, instantiating it if required.
+     * @return an instance of the provider.
+     * @throws java.util.ServiceConfigurationError if the provider could not be loaded or instantiated.
+     */
+    @Override
+    T get();
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the binary provider index generated at build time by the ServiceIndexer annotation processor.
+ *
+ * The index lists, for every service a jar (or directory) provides, the names of its providers.  It allows all the
+ * providers of a source to be discovered by reading a single resource instead of one provider-configuration file per
+ * service.  The format is part of the public API of this library, as it is shared with the ServiceIndexer artifact:
+ *
+ *     int     magic number (0x58534958)
+ *     short   format version (1)
+ *     int     number of services
+ *     for each service:
+ *         UTF     name of the service
+ *         int     number of providers
+ *         UTF[]   names of the providers
+ */
+public final class ProviderIndex {
+
+    //region Fields (Public)
+
+    /**
+     * The location of the index within a ClassLoader's resources, next to the provider-configuration files.
+     */
+    public static final String LOCATION = "META-INF/services.idx";
+
+    //endregion
+
+    //region Fields (Private)
+
+    /**
+     * The magic number identifying an index.
+     */
+    private static final int MAGIC = 0x58534958;
+
+    /**
+     * The version of the format written by this class.
+     */
+    private static final short VERSION = 1;
+
+    //endregion
+
+    //region Constructors (Private)
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ProviderIndex() {}
+
+    //endregion
+
+    //region Interface (Public)
+
+    /**
+     * Reads an index.
+     * @param in the stream to read from, which is not closed by this method.
+     * @return an unmodifiable mapping of service names to the names of their providers, in the order they were written.
+     * @throws IOException if the stream could not be read or does not contain an index.
+     */
+    public static Map<String, List<String>> read(final InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a provider index.");
+        }
+        final short version = data.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported provider index version: " + version);
+        }
+
+        final int services = data.readInt();
+        final Map<String, List<String>> index = new LinkedHashMap<>();
+        for (int service = 0; service < services; service++) {
+            final String name = data.readUTF();
+            final int count = data.readInt();
+            final List<String> providers = new ArrayList<>(count);
+            for (int provider = 0; provider < count; provider++) {
+                providers.add(data.readUTF());
+            }
+            index.put(name, Collections.unmodifiableList(providers));
+        }
+        return Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * Writes an index.
+     * @param out the stream to write to, which is flushed but not closed by this method.
+     * @param index a mapping of service names to the names of their providers.
+     * @throws IOException if the stream could not be written to.
+     */
+    public static void write(final OutputStream out, final Map<String, ? extends List<String>> index)
+            throws IOException {
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeInt(index.size());
+        for (Map.Entry<String, ? extends List<String>> entry : index.entrySet()) {
+            data.writeUTF(entry.getKey());
+            data.writeInt(entry.getValue().size());
+            for (String provider : entry.getValue()) {
+                data.writeUTF(provider);
+            }
+        }
+        data.flush();
+    }
+
+    //endregion
+}
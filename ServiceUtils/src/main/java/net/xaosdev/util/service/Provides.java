@@ -0,0 +1,45 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares that the annotated class is a provider of one or more services.
+ *
+ * When the ServiceIndexer annotation processor is present at build time, it generates the provider-configuration
+ * files ("META-INF/services/...") for every annotated class, along with a compact binary index of all of them.
+ * Sources containing such an index are discovered without parsing any provider-configuration files.
+ *
+ * The annotated class must be public, concrete, have a public no-argument constructor and implement every service
+ * it declares.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Provides {
+
+    /**
+     * The SPIs the annotated class provides.
+     * @return the SPIs the annotated class provides.
+     */
+    Class<?>[] value();
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service;
+
+/**
+ * An enumeration of the ways a Service may hand out instances of its providers.
+ *
+ * Whichever scope is chosen, a provider class is only ever located once per source; the scope merely governs how
+ * often it is constructed and who may share the resulting instances.
+ */
+public enum Scope {
+    /**
+     * Each provider is instantiated exactly once and the instance is shared by every caller on every thread.  This
+     * is the default and is best suited to stateless or thread-safe providers.
+     */
+    SINGLETON,
+    /**
+     * A new instance of each provider is created every time the provider is handed out.
+     */
+    PROTOTYPE,
+    /**
+     * Each provider is instantiated once per thread and the instance is confined to that thread.  This is suited to
+     * providers that are not thread-safe but are expensive to construct.
+     */
+    THREAD
+}
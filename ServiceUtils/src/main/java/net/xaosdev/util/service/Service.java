@@ -16,17 +16,35 @@
 
 package net.xaosdev.util.service;
 
+import net.xaosdev.util.service.internal.FlightRecorderEvents;
 import net.xaosdev.util.service.internal.IsolatedServiceLoader;
+import net.xaosdev.util.service.internal.PermissionCache;
+import net.xaosdev.util.service.internal.ServiceSnapshot;
+import net.xaosdev.util.service.internal.SourceSpliterator;
 import net.xaosdev.util.service.security.ServiceUtilityPermission;
 
-import java.security.AccessController;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.ServiceLoader;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -40,41 +58,110 @@ import java.util.stream.StreamSupport;
  * java.util.ServiceLoader best practices should still be enforced!  This means that, ideally, your SPI classes should
  * be interfaces, and the implementations should have no-argument or default constructors to ensure no unexpected
  * exceptions are fired.
+ *
+ * A Service is safe for concurrent use.  Its sources are held in an immutable, versioned snapshot: readers work from
+ * whichever snapshot was current when they started without taking any locks, and each mutation publishes a new
+ * snapshot atomically.  Sources added or removed after a stream was created are therefore not seen by that stream.
+ *
+ * How provider instances are shared is governed by the Scope the Service is created with.  By default, every provider
+ * is instantiated once and shared (see Scope.SINGLETON).
+ *
+ * When a SecurityManager is installed, every method checks that its caller holds the relevant
+ * ServiceUtilityPermission.  Successful checks are remembered per calling context (see the Security class for when
+ * they are forgotten), so a trusted caller repeatedly using a Service does not consult the Policy on every call.
+ *
+ * Changes to the providers of a Service can be observed by registering a ServiceListener, which is told which Source
+ * was added or removed, or had its providers discovered, along with the handles of those providers.
+ *
+ * A Service may also be created with a ServiceMetrics, which is told about its sources, its providers, the streams
+ * requested from it and the time spent on its security checks.  See the metrics package for a built-in implementation
+ * that can be monitored over JMX.
  * @param <T> the SPI to find implementations for.
  */
-public final class Service<T> {
+public final class Service<T> implements AutoCloseable {
 
     //region Fields (Private)
 
+    /**
+     * The permission required to enumerate the providers of a Service.
+     */
+    private static final ServiceUtilityPermission ACCESS_PERMISSION =
+            new ServiceUtilityPermission(ServiceUtilityPermission.Type.ACCESS);
+
+    /**
+     * The permission required to create or mutate a Service.
+     */
+    private static final ServiceUtilityPermission UPDATE_PERMISSION =
+            new ServiceUtilityPermission(ServiceUtilityPermission.Type.UPDATE);
+
     /**
      * The SPI Class.
      */
     private final Class<T> clazz;
 
     /**
-     * A mapping of UUIDs to Sources, for source management.
+     * The Scope governing how provider instances are shared.
+     */
+    private final Scope scope;
+
+    /**
+     * The current snapshot of Sources and their IsolatedServiceLoaders, for source and loader management.
+     */
+    private final AtomicReference<ServiceSnapshot<T>> snapshot = new AtomicReference<>(ServiceSnapshot.empty());
+
+    /**
+     * The listeners notified of changes to the providers of this Service.
      */
-    private final Map<UUID, Source> sourceMap = new HashMap<>();
+    private final List<ServiceListener<T>> listeners = new CopyOnWriteArrayList<>();
 
     /**
-     * A mapping of UUIDs to IsolatedServiceLoaders, for loader management.
+     * The ServiceMetrics this Service reports to.
      */
-    private final Map<UUID, IsolatedServiceLoader<T>> loaderMap = new HashMap<>();
+    private final ServiceMetrics metrics;
 
     //endregion
 
     //region Constructors (Public)
 
     /**
-     * Creates a new Service.
+     * Creates a new Service whose providers are shared singletons.
      * @param clazz the Class object used to identify service implementations.
      */
     public Service(final Class<T> clazz) {
+        this(clazz, Scope.SINGLETON);
+    }
+
+    /**
+     * Creates a new Service whose providers are handed out according to the provided Scope.
+     * @param clazz the Class object used to identify service implementations.
+     * @param scope the Scope governing how provider instances are shared.
+     */
+    public Service(final Class<T> clazz, final Scope scope) {
+        this(clazz, scope, ServiceMetrics.NONE);
+    }
+
+    /**
+     * Creates a new Service whose providers are handed out according to the provided Scope, reporting to the provided
+     * ServiceMetrics.
+     * @param clazz the Class object used to identify service implementations.
+     * @param scope the Scope governing how provider instances are shared.
+     * @param metrics the ServiceMetrics to report to.
+     */
+    public Service(final Class<T> clazz, final Scope scope, final ServiceMetrics metrics) {
         if (System.getSecurityManager() != null) {
-            AccessController.checkPermission(new ServiceUtilityPermission(ServiceUtilityPermission.Type.UPDATE));
+            PermissionCache.checkPermission(UPDATE_PERMISSION);
+        }
+
+        if (scope == null) {
+            throw new IllegalArgumentException("Scope may not be null.");
+        }
+        if (metrics == null) {
+            throw new IllegalArgumentException("ServiceMetrics may not be null.");
         }
 
         this.clazz = clazz;
+        this.scope = scope;
+        this.metrics = metrics;
     }
 
     //endregion
@@ -87,37 +174,131 @@ public final class Service<T> {
      */
     public void addSource(final Source source) {
         if (System.getSecurityManager() != null) {
-            AccessController.checkPermission(new ServiceUtilityPermission(ServiceUtilityPermission.Type.UPDATE));
+            checkPermission(UPDATE_PERMISSION);
         }
 
-        if (sourceMap.containsKey(source.getUUID())) {
-            throw new IllegalArgumentException("Source with UUID already added to this Service.");
+        final Object event = FlightRecorderEvents.SOURCE_ADDED.begin();
+        final IsolatedServiceLoader<T> loader = createLoader(source);
+        ServiceSnapshot<T> current;
+        ServiceSnapshot<T> next;
+        do {
+            current = snapshot.get();
+            requireAbsent(current, source.getUUID());
+            next = current.withSource(source, loader);
+        } while (!snapshot.compareAndSet(current, next));
+
+        metrics.sourceAdded(source);
+        fire(ServiceEvent.Type.SOURCE_ADDED, source, next.getVersion(), loader::getHandles);
+        FlightRecorderEvents.SOURCE_ADDED.commit(event, source.getUUID(), clazz);
+    }
+
+    /**
+     * Adds several sources to this Service at once.
+     *
+     * The sources are published together, in iteration order, as a single new snapshot.  This is considerably cheaper
+     * than adding a large number of sources one at a time, and readers will observe either none or all of them.
+     * @param sources the Sources to add.
+     */
+    public void addSources(final Collection<? extends Source> sources) {
+        if (System.getSecurityManager() != null) {
+            checkPermission(UPDATE_PERMISSION);
+        }
+
+        final Map<Source, IsolatedServiceLoader<T>> added = new LinkedHashMap<>();
+        final List<Object> events = new ArrayList<>();
+        final Set<UUID> uuids = new HashSet<>();
+        for (Source source : sources) {
+            if (!uuids.add(source.getUUID())) {
+                throw new IllegalArgumentException("Source with UUID added more than once.");
+            }
+            events.add(FlightRecorderEvents.SOURCE_ADDED.begin());
+            added.put(source, createLoader(source));
         }
 
-        sourceMap.put(source.getUUID(), source);
-        loaderMap.put(source.getUUID(), IsolatedServiceLoader.load(clazz, source.getClassLoader()));
+        ServiceSnapshot<T> current;
+        ServiceSnapshot<T> next;
+        do {
+            current = snapshot.get();
+            for (UUID uuid : uuids) {
+                requireAbsent(current, uuid);
+            }
+            next = current.withSources(added);
+        } while (!snapshot.compareAndSet(current, next));
+
+        added.keySet().forEach(metrics::sourceAdded);
+        final long version = next.getVersion();
+        final Iterator<Object> event = events.iterator();
+        added.forEach((source, loader) -> {
+            fire(ServiceEvent.Type.SOURCE_ADDED, source, version, loader::getHandles);
+            FlightRecorderEvents.SOURCE_ADDED.commit(event.next(), source.getUUID(), clazz);
+        });
     }
 
     /**
      * Gets an unmodifiable view of all the sources within this Service.
+     *
+     * The view is taken from the current snapshot and will not reflect sources added or removed afterwards.
      * @return an unmodifiable view of all the sources added to this Service.
      */
     public Collection<Source> getSources() {
         if (System.getSecurityManager() != null) {
-            AccessController.checkPermission(new ServiceUtilityPermission(ServiceUtilityPermission.Type.UPDATE));
+            checkPermission(UPDATE_PERMISSION);
+        }
+
+        return snapshot.get().getSources();
+    }
+
+    /**
+     * Gets the Class object used to identify service implementations.
+     * @return the SPI of this Service.
+     */
+    public Class<T> getServiceClass() {
+        return clazz;
+    }
+
+    /**
+     * Gets the Scope governing how provider instances are shared.
+     * @return the Scope of this Service.
+     */
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Gets the ServiceMetrics this Service reports to.
+     * @return the ServiceMetrics of this Service, which is ServiceMetrics.NONE unless one was provided on creation.
+     */
+    public ServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the version of the current snapshot of sources.
+     *
+     * The version starts at zero and is incremented every time a source is added or removed.  It can be used to
+     * cheaply detect whether the sources have changed since they were last inspected.
+     * @return the version of the current snapshot of sources.
+     */
+    public long getVersion() {
+        if (System.getSecurityManager() != null) {
+            checkPermission(ACCESS_PERMISSION);
         }
 
-        return Collections.unmodifiableCollection(sourceMap.values());
+        return snapshot.get().getVersion();
     }
 
     /**
      * Removes a Source from this Service.
+     *
+     * Once removed, the providers discovered from the source are forgotten and the source is closed, releasing any
+     * ClassLoader it created.
      * @param source the Source to remove.
      * @return a boolean indicating if the source was removed.
+     * @throws UncheckedIOException if the source was removed but could not be closed.
      */
     public boolean removeSource(final Source source) {
         if (System.getSecurityManager() != null) {
-            AccessController.checkPermission(new ServiceUtilityPermission(ServiceUtilityPermission.Type.UPDATE));
+            checkPermission(UPDATE_PERMISSION);
         }
 
         return removeSource(source.getUUID()) != null;
@@ -125,37 +306,480 @@ public final class Service<T> {
 
     /**
      * Removes a Source from this Service.
+     *
+     * Once removed, the providers discovered from the source are forgotten and the source is closed, releasing any
+     * ClassLoader it created.
      * @param uuid the UUID of the Source to remove.
      * @return the Source removed from this Service or null if none present.
+     * @throws UncheckedIOException if the source was removed but could not be closed.
      */
     public Source removeSource(final UUID uuid) {
         if (System.getSecurityManager() != null) {
-            AccessController.checkPermission(new ServiceUtilityPermission(ServiceUtilityPermission.Type.UPDATE));
+            checkPermission(UPDATE_PERMISSION);
         }
 
-        if (!sourceMap.containsKey(uuid)) {
-            return null;
-        }
+        ServiceSnapshot<T> current;
+        ServiceSnapshot<T> next;
+        do {
+            current = snapshot.get();
+            if (!current.contains(uuid)) {
+                return null;
+            }
+            next = current.withoutSource(uuid);
+        } while (!snapshot.compareAndSet(current, next));
 
-        final Source source = sourceMap.remove(uuid);
-        loaderMap.remove(uuid);
+        final Source source = current.getSource(uuid);
+        release(source, current.getLoader(uuid), next.getVersion());
         return source;
     }
 
+    /**
+     * Removes every Source from this Service at once, closing each of them.
+     *
+     * The Service remains usable afterwards, and new sources may be added to it.
+     * @throws UncheckedIOException if any source could not be closed, after every source has been removed.
+     */
+    @Override
+    public void close() {
+        if (System.getSecurityManager() != null) {
+            checkPermission(UPDATE_PERMISSION);
+        }
+
+        ServiceSnapshot<T> current;
+        ServiceSnapshot<T> next;
+        do {
+            current = snapshot.get();
+            next = current.withoutSources();
+        } while (!snapshot.compareAndSet(current, next));
+
+        RuntimeException failure = null;
+        for (Source source : current.getSources()) {
+            try {
+                release(source, current.getLoader(source.getUUID()), next.getVersion());
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Registers a listener to be notified of changes to the providers of this Service.
+     *
+     * The listener is only notified of changes made after it was registered; the sources already present can be read
+     * from `getSources` or `getProviderHandles`.  A listener registered more than once is notified more than once.
+     * @param listener the ServiceListener to register.
+     */
+    public void addListener(final ServiceListener<T> listener) {
+        if (System.getSecurityManager() != null) {
+            checkPermission(ACCESS_PERMISSION);
+        }
+
+        if (listener == null) {
+            throw new IllegalArgumentException("ServiceListener may not be null.");
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     * @param listener the ServiceListener to unregister.
+     * @return a boolean indicating if the listener was registered.
+     */
+    public boolean removeListener(final ServiceListener<T> listener) {
+        if (System.getSecurityManager() != null) {
+            checkPermission(ACCESS_PERMISSION);
+        }
+
+        return listeners.remove(listener);
+    }
+
     /**
      * Gets a stream of all the service implementations within this Service.
+     *
+     * The instances returned depend on the Scope of this Service.  The stream traverses the sources of this Service
+     * through a single, flat Spliterator, so the cost of each element does not grow with the number of sources.
      * @return a Stream to the implementations found by this Service.
      */
     public Stream<T> getServiceStream() {
         if (System.getSecurityManager() != null) {
-            AccessController.checkPermission(new ServiceUtilityPermission(ServiceUtilityPermission.Type.ACCESS));
+            checkPermission(ACCESS_PERMISSION);
         }
 
-        Stream<T> stream = Stream.empty();
-        for (IsolatedServiceLoader<T> loader : loaderMap.values()) {
-            stream = Stream.concat(stream, StreamSupport.stream(loader.spliterator(), false));
+        return serviceStream(false);
+    }
+
+    /**
+     * Gets a parallel stream of all the service implementations within this Service.
+     *
+     * The stream splits along source boundaries so that each source can be loaded and instantiated by its own task
+     * within the ForkJoinPool the terminal operation runs in (the common pool, unless the operation is invoked from
+     * within another pool).  The stream is ordered, so operations such as `forEachOrdered` or `collect` observe the
+     * same order as the sequential stream.
+     * @return a parallel Stream to the implementations found by this Service.
+     */
+    public Stream<T> getParallelServiceStream() {
+        if (System.getSecurityManager() != null) {
+            checkPermission(ACCESS_PERMISSION);
+        }
+
+        return serviceStream(true);
+    }
+
+    /**
+     * Loads and instantiates all the service implementations within this Service using the provided Executor.
+     *
+     * Each source is handled by its own task.  If ordered, the resulting list follows the order of the sequential
+     * stream; otherwise, each source's implementations are appended to the list as soon as its task completes.
+     * @param executor the Executor to run the tasks with, such as a ForkJoinPool.
+     * @param ordered whether or not the implementations should be kept in source order.
+     * @return a CompletableFuture completing with the implementations found by this Service, or exceptionally if any
+     *         source failed to load.
+     */
+    public CompletableFuture<List<T>> getServicesAsync(final Executor executor, final boolean ordered) {
+        if (System.getSecurityManager() != null) {
+            checkPermission(ACCESS_PERMISSION);
+        }
+
+        metrics.streamRequested();
+        final List<IsolatedServiceLoader<T>> loaders = snapshot.get().getLoaders();
+        final List<CompletableFuture<List<T>>> tasks = new ArrayList<>(loaders.size());
+        for (IsolatedServiceLoader<T> loader : loaders) {
+            tasks.add(CompletableFuture.supplyAsync(() -> {
+                final List<T> implementations = new ArrayList<>();
+                loader.forEach(implementations::add);
+                return implementations;
+            }, executor));
+        }
+
+        if (ordered) {
+            return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+                final List<T> implementations = new ArrayList<>();
+                tasks.forEach(task -> implementations.addAll(task.join()));
+                return implementations;
+            });
+        }
+
+        final Queue<T> completed = new ConcurrentLinkedQueue<>();
+        final CompletableFuture<?>[] appended = tasks.stream()
+                .map(task -> task.thenAccept(completed::addAll))
+                .toArray(CompletableFuture<?>[]::new);
+        return CompletableFuture.allOf(appended).thenApply(done -> new ArrayList<>(completed));
+    }
+
+    /**
+     * Gets a stream of handles to all the service implementations within this Service.
+     *
+     * Unlike the service stream, this stream does not load or instantiate any provider; each is only instantiated
+     * once `get` is called on its handle.  This makes it cheap to select providers by name or Source before paying
+     * for their construction.
+     * @return a Stream of handles to the implementations declared by the sources of this Service.
+     */
+    public Stream<ProviderHandle<T>> getProviderHandles() {
+        if (System.getSecurityManager() != null) {
+            checkPermission(ACCESS_PERMISSION);
+        }
+
+        metrics.streamRequested();
+        return StreamSupport.stream(new SourceSpliterator<>(snapshot.get().getLoaders(),
+                loader -> loader.getHandles().iterator()), false);
+    }
+
+    /**
+     * Gets a stream of all the service implementations within this Service, from most to least preferred.
+     *
+     * Providers are ranked by the priority of their Source (see Source.getPriority), then by the Priority annotation
+     * of their class, and finally by the order of the service stream.  The ranking is computed once, by loading but not
+     * instantiating every provider class, and reused until the sources of this Service change.  Providers are only
+     * instantiated as the stream reaches them.
+     * @return a Stream to the implementations found by this Service, from most to least preferred.
+     */
+    public Stream<T> getPrioritizedServiceStream() {
+        if (System.getSecurityManager() != null) {
+            checkPermission(ACCESS_PERMISSION);
+        }
+
+        metrics.streamRequested();
+        return snapshot.get().getRankedHandles().stream().map(ProviderHandle::get);
+    }
+
+    /**
+     * Gets the most preferred service implementation within this Service.
+     *
+     * See `getPrioritizedServiceStream` for how providers are ranked.  Once ranked, this is a constant-time lookup and
+     * no other provider is instantiated.
+     * @return the most preferred implementation, or an empty Optional if this Service has none.
+     */
+    public Optional<T> getBest() {
+        if (System.getSecurityManager() != null) {
+            checkPermission(ACCESS_PERMISSION);
+        }
+
+        metrics.streamRequested();
+        final List<ProviderHandle<T>> ranked = snapshot.get().getRankedHandles();
+        return ranked.isEmpty() ? Optional.empty() : Optional.of(ranked.get(0).get());
+    }
+
+    /**
+     * Gets the first service implementation within this Service, in the order sources were added.
+     *
+     * Providers are inspected in order only until the first one defined by its source is found, and only that one is
+     * instantiated.
+     * @return the first implementation, or an empty Optional if this Service has none.
+     */
+    public Optional<T> getFirst() {
+        if (System.getSecurityManager() != null) {
+            checkPermission(ACCESS_PERMISSION);
+        }
+
+        return serviceStream(false).findFirst();
+    }
+
+    /**
+     * Gets a stream of the service implementations within this Service that implement the provided subtype of the SPI.
+     *
+     * Unlike filtering the service stream, only the matching providers are instantiated.  The provider classes of each
+     * source are loaded and indexed by their supertypes the first time any subtype is looked up, and the matches for
+     * each subtype are remembered until the sources of this Service change, so that repeated lookups cost only as much
+     * as the number of providers they return.  The instances returned depend on the Scope of this Service.
+     * @param type the subtype of the SPI to find implementations of.
+     * @param <S> the subtype of the SPI.
+     * @return a Stream to the implementations of the subtype, in the order of the service stream.
+     */
+    public <S extends T> Stream<S> getProviders(final Class<S> type) {
+        if (System.getSecurityManager() != null) {
+            checkPermission(ACCESS_PERMISSION);
+        }
+
+        metrics.streamRequested();
+        return snapshot.get().getHandles(type).stream().map(handle -> type.cast(handle.get()));
+    }
+
+    /**
+     * Loads, links and initializes the provider classes of every source of this Service using the provided Executor.
+     *
+     * The first use of a freshly added Source otherwise pays for loading its provider classes, and the classes they
+     * depend on, on whichever thread happens to use it.  Warming a Service up beforehand moves that cost onto the
+     * Executor: each provider is warmed up by its own task, so the providers of every source are warmed up in
+     * parallel.  Only the providers of the sources present when this method is called are warmed up, and no provider
+     * is instantiated.  See IsolatedServiceLoader.warmUp for which classes are warmed up.
+     * @param executor the Executor to run the tasks with, such as a ForkJoinPool.
+     * @return a CompletableFuture completing, once every provider has been warmed up, with a report timing each
+     *         source.  Providers that fail to warm up are recorded by the report rather than failing the future.
+     */
+    public CompletableFuture<WarmUpReport> warmUp(final Executor executor) {
+        if (System.getSecurityManager() != null) {
+            checkPermission(ACCESS_PERMISSION);
+        }
+
+        final long start = System.nanoTime();
+        final ServiceSnapshot<T> current = snapshot.get();
+        final List<CompletableFuture<WarmUpReport.SourceReport>> tasks = new ArrayList<>();
+        for (Source source : current.getSources()) {
+            tasks.add(warmUp(source, current.getLoader(source.getUUID()), executor, start));
+        }
+        return report(tasks, start);
+    }
+
+    /**
+     * Loads, links and initializes the provider classes of a single source of this Service using the provided
+     * Executor.
+     *
+     * See `warmUp(Executor)`.  This is typically called after adding a Source and before enabling the features that
+     * rely on its providers.
+     * @param source the Source to warm up.
+     * @param executor the Executor to run the tasks with, such as a ForkJoinPool.
+     * @return a CompletableFuture completing, once every provider of the Source has been warmed up, with a report
+     *         timing the Source.
+     * @throws IllegalArgumentException if the Source has not been added to this Service.
+     */
+    public CompletableFuture<WarmUpReport> warmUp(final Source source, final Executor executor) {
+        if (System.getSecurityManager() != null) {
+            checkPermission(ACCESS_PERMISSION);
+        }
+
+        final long start = System.nanoTime();
+        final IsolatedServiceLoader<T> loader = snapshot.get().getLoader(source.getUUID());
+        if (loader == null) {
+            throw new IllegalArgumentException("Source not added to this Service.");
+        }
+        return report(Collections.singletonList(warmUp(source, loader, executor, start)), start);
+    }
+
+    //endregion
+
+    //region Interface (Private)
+
+    /**
+     * Warms up the providers of a Source, one task per provider.
+     * @param source the Source to warm up.
+     * @param loader the IsolatedServiceLoader of the Source.
+     * @param executor the Executor to run the tasks with.
+     * @param start the time, in nanoseconds, the warm-up was requested at.
+     * @return a CompletableFuture completing with the report of the Source.
+     */
+    private CompletableFuture<WarmUpReport.SourceReport> warmUp(final Source source,
+                                                                final IsolatedServiceLoader<T> loader,
+                                                                final Executor executor, final long start) {
+        final UUID uuid = source.getUUID();
+        return CompletableFuture.supplyAsync(loader::getHandles, executor).thenCompose(handles -> {
+            final List<CompletableFuture<Integer>> tasks = new ArrayList<>(handles.size());
+            for (ProviderHandle<T> handle : handles) {
+                tasks.add(CompletableFuture.supplyAsync(() -> loader.warmUp(handle), executor));
+            }
+            return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).handle((done, ignored) -> {
+                int classes = 0;
+                final List<Throwable> failures = new ArrayList<>();
+                for (CompletableFuture<Integer> task : tasks) {
+                    try {
+                        classes += task.join();
+                    } catch (CompletionException e) {
+                        failures.add(e.getCause());
+                    }
+                }
+                return new WarmUpReport.SourceReport(uuid, handles.size(), classes, since(start), failures);
+            });
+        }).exceptionally(failure -> new WarmUpReport.SourceReport(uuid, 0, 0, since(start), Collections.singletonList(
+                failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure)));
+    }
+
+    /**
+     * Combines the reports of several sources once all of them are complete.
+     * @param tasks the tasks completing with the report of each source.
+     * @param start the time, in nanoseconds, the warm-up was requested at.
+     * @return a CompletableFuture completing with the combined report.
+     */
+    private static CompletableFuture<WarmUpReport> report(
+            final List<CompletableFuture<WarmUpReport.SourceReport>> tasks, final long start) {
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            final List<WarmUpReport.SourceReport> reports = new ArrayList<>(tasks.size());
+            tasks.forEach(task -> reports.add(task.join()));
+            return new WarmUpReport(reports, since(start));
+        });
+    }
+
+    /**
+     * Measures the time elapsed since a given instant.
+     * @param start the instant, in nanoseconds, as returned by System.nanoTime.
+     * @return the time elapsed since the instant.
+     */
+    private static Duration since(final long start) {
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    /**
+     * Creates a stream of all the service implementations within this Service, reporting the request to the
+     * ServiceMetrics of this Service.
+     * @param parallel whether or not the stream should be parallel.
+     * @return a Stream to the implementations found by this Service.
+     */
+    private Stream<T> serviceStream(final boolean parallel) {
+        metrics.streamRequested();
+        return StreamSupport.stream(new SourceSpliterator<>(snapshot.get().getLoaders(), Iterable::iterator), parallel);
+    }
+
+    /**
+     * Ensures that a snapshot does not contain a Source.
+     * @param snapshot the snapshot to check.
+     * @param uuid the UUID of the Source.
+     * @throws IllegalArgumentException if the snapshot contains the Source.
+     */
+    private static void requireAbsent(final ServiceSnapshot<?> snapshot, final UUID uuid) {
+        if (snapshot.contains(uuid)) {
+            throw new IllegalArgumentException("Source with UUID already added to this Service.");
+        }
+    }
+
+    /**
+     * Checks that the caller holds a permission, reporting the time taken to the ServiceMetrics of this Service.
+     * @param permission the permission to check for.
+     */
+    private void checkPermission(final ServiceUtilityPermission permission) {
+        if (metrics == ServiceMetrics.NONE) {
+            PermissionCache.checkPermission(permission);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        try {
+            PermissionCache.checkPermission(permission);
+        } finally {
+            metrics.securityChecked(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Creates the IsolatedServiceLoader of a Source, reporting the discovery of its providers to the listeners.
+     * @param source the Source to create a loader for.
+     * @return the new IsolatedServiceLoader.
+     */
+    private IsolatedServiceLoader<T> createLoader(final Source source) {
+        return IsolatedServiceLoader.load(clazz, source, scope, handles -> {
+            metrics.providersDiscovered(source, handles.size());
+            fire(ServiceEvent.Type.PROVIDERS_DISCOVERED, source, snapshot.get().getVersion(), () -> handles);
+        }, metrics);
+    }
+
+    /**
+     * Reports the removal of a Source to the listeners, then forgets its providers and closes it.
+     * @param source the removed Source.
+     * @param loader the IsolatedServiceLoader of the removed Source.
+     * @param version the version of the snapshot of sources without the Source.
+     * @throws UncheckedIOException if the source could not be closed.
+     */
+    private void release(final Source source, final IsolatedServiceLoader<T> loader, final long version) {
+        final List<ProviderHandle<T>> discovered = loader.getDiscoveredHandles();
+        metrics.sourceRemoved(source);
+        try {
+            fire(ServiceEvent.Type.SOURCE_REMOVED, source, version, () -> discovered);
+        } finally {
+            loader.close();
+            try {
+                source.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Source " + source.getUUID() + " could not be closed.", e);
+            }
+        }
+    }
+
+    /**
+     * Notifies every registered listener of a change.
+     *
+     * Every listener is notified even if an earlier one throws, after which the first exception is rethrown with any
+     * later ones suppressed.
+     * @param type the kind of change.
+     * @param source the Source that changed.
+     * @param version the version of the snapshot of sources at the time of the change.
+     * @param handles supplies the handles of the providers of the Source.
+     */
+    private void fire(final ServiceEvent.Type type, final Source source, final long version,
+                      final Supplier<List<ProviderHandle<T>>> handles) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+
+        final ServiceEvent<T> event = new ServiceEvent<>(this, type, source, version, handles);
+        RuntimeException failure = null;
+        for (ServiceListener<T> listener : listeners) {
+            try {
+                listener.serviceChanged(event);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
         }
-        return stream;
     }
 
     //endregion
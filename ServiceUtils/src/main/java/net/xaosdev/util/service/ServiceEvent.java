@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Describes a change to the providers available from a Service.
+ *
+ * Each event names the Source that changed along with the handles of its providers, allowing state derived from a
+ * Service to be updated incrementally rather than rebuilt from the whole service stream.
+ *
+ * Events raised by concurrent changes may be delivered out of order.  The version of the snapshot each change
+ * published is carried by its event, so that listeners can tell which change is the most recent.
+ * @param <T> the SPI of the Service the event was raised by.
+ */
+public final class ServiceEvent<T> {
+
+    //region Enums (Public)
+
+    /**
+     * The kinds of changes a Service reports.
+     */
+    public enum Type {
+
+        /**
+         * A Source was added to the Service.
+         *
+         * The handles of the event are read from the descriptors of the Source when first requested, which raises a
+         * PROVIDERS_DISCOVERED event if they had not been read yet.
+         */
+        SOURCE_ADDED,
+
+        /**
+         * A Source was removed from the Service.
+         *
+         * The handles of the event are those that had been discovered before the Source was removed, and are empty if
+         * its providers were never enumerated.
+         */
+        SOURCE_REMOVED,
+
+        /**
+         * The descriptors of a Source were read, and its providers became known, for the first time.
+         *
+         * This happens at most once per Source, on whichever thread first enumerates its providers.
+         */
+        PROVIDERS_DISCOVERED
+    }
+
+    //endregion
+
+    //region Fields (Private)
+
+    /**
+     * The Service raising the event.
+     */
+    private final Service<T> service;
+
+    /**
+     * The kind of change.
+     */
+    private final Type type;
+
+    /**
+     * The Source that changed.
+     */
+    private final Source source;
+
+    /**
+     * The version of the snapshot of sources at the time of the change.
+     */
+    private final long version;
+
+    /**
+     * Supplies the handles of the providers of the Source.
+     */
+    private final Supplier<List<ProviderHandle<T>>> handles;
+
+    //endregion
+
+    //region Constructors (Package-Private)
+
+    /**
+     * Creates a new ServiceEvent.
+     * @param service the Service raising the event.
+     * @param type the kind of change.
+     * @param source the Source that changed.
+     * @param version the version of the snapshot of sources at the time of the change.
+     * @param handles supplies the handles of the providers of the Source.
+     */
+    ServiceEvent(final Service<T> service, final Type type, final Source source, final long version,
+                 final Supplier<List<ProviderHandle<T>>> handles) {
+        this.service = service;
+        this.type = type;
+        this.source = source;
+        this.version = version;
+        this.handles = handles;
+    }
+
+    //endregion
+
+    //region Interface (Public)
+
+    /**
+     * Gets the Service that raised this event.
+     * @return the Service that raised this event.
+     */
+    public Service<T> getService() {
+        return service;
+    }
+
+    /**
+     * Gets the kind of change this event describes.
+     * @return the kind of change.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the Source that changed.
+     * @return the Source that was added, removed, or had its providers discovered.
+     */
+    public Source getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the version of the snapshot of sources at the time of the change.
+     *
+     * For PROVIDERS_DISCOVERED events, this is the version current when the providers were discovered.
+     * @return the version of the snapshot of sources.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the handles of the providers of the Source that changed.
+     *
+     * See the documentation of each Type for what the handles contain.
+     * @return an unmodifiable list of the handles of the providers of the Source, in declaration order.
+     */
+    public List<ProviderHandle<T>> getHandles() {
+        return handles.get();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[type=" + type + ", source=" + source.getUUID() + ", version=" + version
+                + "]";
+    }
+
+    //endregion
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service;
+
+/**
+ * A listener notified whenever the providers available from a Service change.
+ *
+ * Listeners are called synchronously, on the thread that caused the change, and after the change has been published;
+ * a stream created from within a listener will already reflect it.  Listeners should therefore return quickly and
+ * hand any expensive work off to another thread.
+ * @param <T> the SPI of the Service being listened to.
+ */
+@FunctionalInterface
+public interface ServiceListener<T> {
+
+    /**
+     * Called when the providers available from a Service have changed.
+     * @param event the event describing the change.
+     */
+    void serviceChanged(ServiceEvent<T> event);
+}
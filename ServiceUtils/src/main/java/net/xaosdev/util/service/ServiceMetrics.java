@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service;
+
+import java.util.UUID;
+
+/**
+ * A sink for the metrics of a Service.
+ *
+ * A Service reports what happens to it to the ServiceMetrics it was created with: the sources added to and removed
+ * from it, the providers discovered and instantiated from each source, every stream requested from it and the time
+ * spent checking the permissions of its callers.  Every method does nothing by default, so an implementation need only
+ * override the ones it is interested in.  See the metrics package for a built-in implementation that can be exposed
+ * over JMX.
+ *
+ * Methods are called synchronously, on the thread that caused the change, and often on hot paths; implementations
+ * must be safe for concurrent use, should return quickly and should not throw.
+ */
+public interface ServiceMetrics {
+
+    //region Fields (Public)
+
+    /**
+     * A ServiceMetrics that ignores everything reported to it.  This is the default for a Service, and lets the
+     * Service skip timing its security checks entirely.
+     */
+    ServiceMetrics NONE = new ServiceMetrics() { };
+
+    //endregion
+
+    //region Interface (Public)
+
+    /**
+     * Called after a Source has been added to the Service.
+     *
+     * The Source is already published, so concurrent callers may discover or instantiate its providers before the
+     * addition has been reported.
+     * @param source the added Source.
+     */
+    default void sourceAdded(final Source source) {
+    }
+
+    /**
+     * Called after a Source has been removed from the Service, before it is closed.
+     * @param source the removed Source.
+     */
+    default void sourceRemoved(final Source source) {
+    }
+
+    /**
+     * Called once the descriptors of a Source have been read.
+     * @param source the Source whose providers were discovered.
+     * @param providers the number of providers declared by the Source.
+     */
+    default void providersDiscovered(final Source source, final int providers) {
+    }
+
+    /**
+     * Called after a provider has been instantiated.
+     * @param sourceUUID the UUID of the Source the provider was loaded from.
+     * @param provider the name of the provider class.
+     * @param nanos the time taken by the constructor of the provider, in nanoseconds.
+     */
+    default void providerInstantiated(final UUID sourceUUID, final String provider, final long nanos) {
+    }
+
+    /**
+     * Called when the constructor of a provider has failed.
+     * @param sourceUUID the UUID of the Source the provider was loaded from.
+     * @param provider the name of the provider class.
+     * @param failure the error reported to the caller.
+     */
+    default void instantiationFailed(final UUID sourceUUID, final String provider, final Throwable failure) {
+    }
+
+    /**
+     * Called whenever the providers of the Service are requested: once per stream of providers or handles, and once per
+     * call to `getBest`, `getFirst` or `getServicesAsync`.
+     */
+    default void streamRequested() {
+    }
+
+    /**
+     * Called after the permissions of a caller of the Service have been checked, whether or not the check passed.
+     * @param nanos the time taken by the check, in nanoseconds.
+     */
+    default void securityChecked(final long nanos) {
+    }
+
+    //endregion
+}
@@ -16,6 +16,8 @@
 
 package net.xaosdev.util.service;
 
+import java.io.IOException;
+import java.net.URL;
 import java.util.UUID;
 
 /**
@@ -23,8 +25,11 @@ import java.util.UUID;
  *
  * A source is used to identify / create a ClassLoader for loading potential plugin classes.  This object should be
  * immutable after its construction and the source should NOT change with subsequent calls to `getClassLoader`.
+ *
+ * A source that creates its own ClassLoader releases it when closed, which a Service does as soon as the source is
+ * removed from it.  A source should therefore only be added to a single Service if it is ever going to be removed.
  */
-public interface Source {
+public interface Source extends AutoCloseable {
 
     /**
      * Gets the UUID used for uniquely identifying this source.
@@ -37,4 +42,39 @@ public interface Source {
      * @return the ClassLoader this source uses to acquire service classes.
      */
     ClassLoader getClassLoader();
+
+    /**
+     * Gets the priority of the providers found within this source relative to those of other sources.
+     *
+     * Higher values are preferred.  Providers are ranked by the priority of their source first and by their own
+     * Priority annotation second.
+     * @return the priority of this source, which is zero unless overridden.
+     */
+    default int getPriority() {
+        return 0;
+    }
+
+    /**
+     * Checks whether a location, found through the ClassLoader of this source, belongs to this source.
+     *
+     * Sources that share a ClassLoader with other sources use this to claim only the provider-configuration files
+     * and provider classes that come from their own jars or directories.  The location is either the URL of a resource
+     * or the CodeSource location of a class.  By default, a source claims every location its ClassLoader can reach.
+     * @param location the URL of a resource or the CodeSource location of a class.
+     * @return true if the location belongs to this source.
+     */
+    default boolean contains(final URL location) {
+        return true;
+    }
+
+    /**
+     * Releases the resources held by this source, such as a ClassLoader it created.
+     *
+     * Classes that have not been loaded yet can no longer be loaded from a closed source.  Closing a source more than
+     * once has no further effect.  By default, this method does nothing.
+     * @throws IOException if the resources could not be released.
+     */
+    @Override
+    default void close() throws IOException {
+    }
 }
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Describes the outcome of warming up the providers of a Service (see Service.warmUp).
+ *
+ * The report holds one SourceReport per Source that was warmed up, in the order the sources were added to the
+ * Service.  A provider that fails to load or initialize does not stop the others from being warmed up; its failure
+ * is recorded by the report of its Source instead.
+ */
+public final class WarmUpReport {
+
+    //region Fields (Private)
+
+    /**
+     * The reports of the sources that were warmed up.
+     */
+    private final List<SourceReport> sources;
+
+    /**
+     * The time taken to warm up every source.
+     */
+    private final Duration duration;
+
+    //endregion
+
+    //region Constructors (Package-Private)
+
+    /**
+     * Creates a new WarmUpReport.
+     * @param sources the reports of the sources that were warmed up.
+     * @param duration the time taken to warm up every source.
+     */
+    WarmUpReport(final List<SourceReport> sources, final Duration duration) {
+        this.sources = Collections.unmodifiableList(new ArrayList<>(sources));
+        this.duration = duration;
+    }
+
+    //endregion
+
+    //region Interface (Public)
+
+    /**
+     * Gets the reports of the sources that were warmed up.
+     * @return an unmodifiable list of the reports of the sources, in the order they were added to the Service.
+     */
+    public List<SourceReport> getSourceReports() {
+        return sources;
+    }
+
+    /**
+     * Gets the report of a single Source.
+     * @param uuid the UUID of the Source.
+     * @return the report of the Source, or null if the Source was not warmed up.
+     */
+    public SourceReport getSourceReport(final UUID uuid) {
+        for (SourceReport report : sources) {
+            if (report.getSourceUUID().equals(uuid)) {
+                return report;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the time taken to warm up every source, from the moment the warm-up was requested.
+     * @return the time taken to warm up every source.
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * Checks whether any provider failed to warm up.
+     * @return true if the report of any Source records a failure.
+     */
+    public boolean hasFailures() {
+        for (SourceReport report : sources) {
+            if (!report.getFailures().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[sources=" + sources.size() + ", duration=" + duration + "]";
+    }
+
+    //endregion
+
+    //region Classes (Public)
+
+    /**
+     * Describes the outcome of warming up the providers of a single Source.
+     */
+    public static final class SourceReport {
+
+        /**
+         * The UUID of the Source.
+         */
+        private final UUID sourceUUID;
+
+        /**
+         * The number of providers declared by the Source.
+         */
+        private final int providers;
+
+        /**
+         * The number of classes of the Source that were warmed up.
+         */
+        private final int classes;
+
+        /**
+         * The time taken to warm up the Source.
+         */
+        private final Duration duration;
+
+        /**
+         * The failures encountered while warming up the Source.
+         */
+        private final List<Throwable> failures;
+
+        /**
+         * Creates a new SourceReport.
+         * @param sourceUUID the UUID of the Source.
+         * @param providers the number of providers declared by the Source.
+         * @param classes the number of classes of the Source that were warmed up.
+         * @param duration the time taken to warm up the Source.
+         * @param failures the failures encountered while warming up the Source.
+         */
+        SourceReport(final UUID sourceUUID, final int providers, final int classes, final Duration duration,
+                     final List<Throwable> failures) {
+            this.sourceUUID = sourceUUID;
+            this.providers = providers;
+            this.classes = classes;
+            this.duration = duration;
+            this.failures = Collections.unmodifiableList(new ArrayList<>(failures));
+        }
+
+        /**
+         * Gets the UUID of the Source this report describes.
+         * @return the UUID of the Source.
+         */
+        public UUID getSourceUUID() {
+            return sourceUUID;
+        }
+
+        /**
+         * Gets the number of providers declared by the Source.
+         * @return the number of providers declared by the Source.
+         */
+        public int getProviderCount() {
+            return providers;
+        }
+
+        /**
+         * Gets the number of classes defined by the Source that were loaded and linked, including the provider classes
+         * themselves.
+         *
+         * Classes shared by several providers are counted once per provider.
+         * @return the number of classes warmed up.
+         */
+        public int getClassCount() {
+            return classes;
+        }
+
+        /**
+         * Gets the time taken to warm up the Source, from the moment the warm-up was requested.
+         *
+         * This includes the time spent waiting for the Executor.
+         * @return the time taken to warm up the Source.
+         */
+        public Duration getDuration() {
+            return duration;
+        }
+
+        /**
+         * Gets the failures encountered while warming up the Source.
+         *
+         * Each failure is typically a ServiceConfigurationError naming the provider that could not be loaded or
+         * initialized.
+         * @return an unmodifiable list of the failures, empty if every provider was warmed up.
+         */
+        public List<Throwable> getFailures() {
+            return failures;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "[source=" + sourceUUID + ", providers=" + providers + ", classes=" +
+                    classes + ", duration=" + duration + ", failures=" + failures.size() + "]";
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,567 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.internal;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Emits JDK Flight Recorder events describing the discovery and instantiation of providers.
+ *
+ * ServiceUtils targets Java 8, whose class library has no jdk.jfr package, so the event types are defined at runtime
+ * through jdk.jfr.EventFactory when it is available, and every method of this class does nothing otherwise.  The
+ * event types are only defined once a recording first starts, and while no recording is running emitting an event
+ * costs a single volatile read: the recording state is tracked by a FlightRecorderListener rather than polled.
+ *
+ * Every event records its start time, duration and thread, along with the fields listed by its Type.  The events are
+ * named after the Types below, prefixed with "net.xaosdev.util.service.", and grouped under the "ServiceUtils"
+ * category.  They can be enabled or given a threshold like any other event, for instance:
+ *
+ *     jcmd <pid> JFR.start settings=profile
+ *
+ * Usage follows that of a regular JFR event, with the fields set on commit:
+ *
+ *     final Object event = FlightRecorderEvents.PROVIDER_LOAD.begin();
+ *     try { ... } finally { FlightRecorderEvents.PROVIDER_LOAD.commit(event, sourceUUID, service, provider); }
+ */
+public final class FlightRecorderEvents {
+
+    //region Fields (Public)
+
+    /**
+     * The validation of a candidate plugin Jar file by JarFileSourceCreator.
+     */
+    public static final Type JAR_VALIDATION = new Type("JarValidation", "Jar Validation",
+            "Validation of a candidate plugin Jar file",
+            new Field(String.class, "file", "File"),
+            new Field(boolean.class, "valid", "Valid"),
+            new Field(boolean.class, "cached", "Cached", "Whether the outcome was read from the validation cache"));
+
+    /**
+     * The addition of a Source to a Service.
+     */
+    public static final Type SOURCE_ADDED = new Type("SourceAdded", "Source Added",
+            "Addition of a Source to a Service",
+            new Field(String.class, "sourceUUID", "Source UUID"),
+            new Field(String.class, "service", "Service", "The SPI of the Service"));
+
+    /**
+     * The loading, without initialization, of a provider class.
+     */
+    public static final Type PROVIDER_LOAD = new Type("ProviderLoad", "Provider Load",
+            "Loading of a provider class declared by a Source",
+            new Field(String.class, "sourceUUID", "Source UUID"),
+            new Field(String.class, "service", "Service", "The SPI of the Service"),
+            new Field(String.class, "provider", "Provider", "The name of the provider class"));
+
+    /**
+     * The instantiation of a provider.
+     */
+    public static final Type PROVIDER_INSTANTIATION = new Type("ProviderInstantiation", "Provider Instantiation",
+            "Instantiation of a provider, including the initialization of its class",
+            new Field(String.class, "sourceUUID", "Source UUID"),
+            new Field(String.class, "service", "Service", "The SPI of the Service"),
+            new Field(String.class, "provider", "Provider", "The name of the provider class"));
+
+    //endregion
+
+    //region Fields (Private)
+
+    /**
+     * The prefix of the names of the events.
+     */
+    private static final String NAME_PREFIX = "net.xaosdev.util.service.";
+
+    /**
+     * The category of the events.
+     */
+    private static final String CATEGORY = "ServiceUtils";
+
+    //endregion
+
+    //region Constructors (Private)
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private FlightRecorderEvents() {}
+
+    //endregion
+
+    //region Interface (Public)
+
+    /**
+     * Checks whether JDK Flight Recorder events can be emitted by this JVM.
+     * @return true if the jdk.jfr package is available.
+     */
+    public static boolean isAvailable() {
+        return Recorder.AVAILABLE;
+    }
+
+    //endregion
+
+    //region Classes (Public)
+
+    /**
+     * A type of event.
+     */
+    public static final class Type {
+
+        /**
+         * The name of the event type.
+         */
+        private final String name;
+
+        /**
+         * The label of the event type.
+         */
+        private final String label;
+
+        /**
+         * The description of the event type.
+         */
+        private final String description;
+
+        /**
+         * The fields of the event type, in the order their values are committed.
+         */
+        private final Field[] fields;
+
+        /**
+         * The jdk.jfr.EventFactory creating events of this type, or null if it has not been created yet.
+         */
+        private volatile Object factory = null;
+
+        /**
+         * Whether or not creating the factory failed.
+         */
+        private volatile boolean failed = false;
+
+        /**
+         * Creates a new Type.
+         * @param name the name of the event type, without its prefix.
+         * @param label the label of the event type.
+         * @param description the description of the event type.
+         * @param fields the fields of the event type.
+         */
+        private Type(final String name, final String label, final String description, final Field... fields) {
+            this.name = NAME_PREFIX + name;
+            this.label = label;
+            this.description = description;
+            this.fields = fields;
+        }
+
+        /**
+         * Gets the name of the event type.
+         * @return the fully qualified name of the event type.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Begins timing an event of this type.
+         * @return the event, or null if no recording of this type of event is running.
+         */
+        public Object begin() {
+            if (!Recorder.recording || failed) {
+                return null;
+            }
+
+            try {
+                final Object event = Recorder.NEW_EVENT.invoke(factory());
+                if (!(boolean) Recorder.IS_ENABLED.invoke(event)) {
+                    return null;
+                }
+                Recorder.BEGIN.invoke(event);
+                return event;
+            } catch (Throwable e) {
+                failed = true;
+                return null;
+            }
+        }
+
+        /**
+         * Commits an event of a type with a single field.
+         * @param event the event returned by `begin`, or null.
+         * @param first the value of the first field.
+         */
+        public void commit(final Object event, final Object first) {
+            if (event != null) {
+                set(event, 0, first);
+                commit(event);
+            }
+        }
+
+        /**
+         * Commits an event of a type with two fields.
+         * @param event the event returned by `begin`, or null.
+         * @param first the value of the first field.
+         * @param second the value of the second field.
+         */
+        public void commit(final Object event, final Object first, final Object second) {
+            if (event != null) {
+                set(event, 0, first);
+                set(event, 1, second);
+                commit(event);
+            }
+        }
+
+        /**
+         * Commits an event of a type with three fields.
+         *
+         * UUIDs and Classes are recorded by their string form and name respectively.
+         * @param event the event returned by `begin`, or null.
+         * @param first the value of the first field.
+         * @param second the value of the second field.
+         * @param third the value of the third field.
+         */
+        public void commit(final Object event, final Object first, final Object second, final Object third) {
+            if (event != null) {
+                set(event, 0, first);
+                set(event, 1, second);
+                set(event, 2, third);
+                commit(event);
+            }
+        }
+
+        /**
+         * Sets a field of an event.
+         * @param event the event.
+         * @param index the index of the field.
+         * @param value the value of the field.
+         */
+        private void set(final Object event, final int index, final Object value) {
+            final Object converted;
+            if (value instanceof UUID) {
+                converted = value.toString();
+            } else if (value instanceof Class) {
+                converted = ((Class<?>) value).getName();
+            } else {
+                converted = value;
+            }
+
+            try {
+                Recorder.SET.invoke(event, index, converted);
+            } catch (Throwable e) {
+                failed = true;
+            }
+        }
+
+        /**
+         * Ends and commits an event.
+         * @param event the event.
+         */
+        private void commit(final Object event) {
+            try {
+                Recorder.COMMIT.invoke(event);
+            } catch (Throwable e) {
+                failed = true;
+            }
+        }
+
+        /**
+         * Gets the factory of this type of event, defining the event type if required.
+         * @return the jdk.jfr.EventFactory of this type.
+         * @throws ReflectiveOperationException if the event type could not be defined.
+         */
+        private Object factory() throws ReflectiveOperationException {
+            Object current = factory;
+            if (current == null) {
+                synchronized (this) {
+                    current = factory;
+                    if (current == null) {
+                        current = Recorder.define(this);
+                        factory = current;
+                    }
+                }
+            }
+            return current;
+        }
+    }
+
+    //endregion
+
+    //region Classes (Private)
+
+    /**
+     * A field of a type of event.
+     */
+    private static final class Field {
+
+        /**
+         * The type of the field, either String or a primitive type.
+         */
+        private final Class<?> type;
+
+        /**
+         * The name of the field.
+         */
+        private final String name;
+
+        /**
+         * The label of the field.
+         */
+        private final String label;
+
+        /**
+         * The description of the field, or null if it has none.
+         */
+        private final String description;
+
+        /**
+         * Creates a new Field without a description.
+         * @param type the type of the field.
+         * @param name the name of the field.
+         * @param label the label of the field.
+         */
+        private Field(final Class<?> type, final String name, final String label) {
+            this(type, name, label, null);
+        }
+
+        /**
+         * Creates a new Field.
+         * @param type the type of the field.
+         * @param name the name of the field.
+         * @param label the label of the field.
+         * @param description the description of the field, or null if it has none.
+         */
+        private Field(final Class<?> type, final String name, final String label, final String description) {
+            this.type = type;
+            this.name = name;
+            this.label = label;
+            this.description = description;
+        }
+    }
+
+    /**
+     * Binds to the jdk.jfr API reflectively, and tracks whether any recording is running.
+     */
+    private static final class Recorder {
+
+        /**
+         * Whether or not the jdk.jfr API is available.
+         */
+        private static final boolean AVAILABLE;
+
+        /**
+         * EventFactory.newEvent(), as (Object)Object.
+         */
+        private static final MethodHandle NEW_EVENT;
+
+        /**
+         * Event.isEnabled(), as (Object)boolean.
+         */
+        private static final MethodHandle IS_ENABLED;
+
+        /**
+         * Event.begin(), as (Object)void.
+         */
+        private static final MethodHandle BEGIN;
+
+        /**
+         * Event.set(int, Object), as (Object, int, Object)void.
+         */
+        private static final MethodHandle SET;
+
+        /**
+         * Event.commit(), as (Object)void.
+         */
+        private static final MethodHandle COMMIT;
+
+        /**
+         * Whether or not any recording is running.
+         */
+        private static volatile boolean recording = false;
+
+        /**
+         * The recordings currently running.
+         */
+        private static final Set<Object> running = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        static {
+            boolean available = false;
+            MethodHandle newEvent = null;
+            MethodHandle isEnabled = null;
+            MethodHandle begin = null;
+            MethodHandle set = null;
+            MethodHandle commit = null;
+            try {
+                final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                final Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+                final Class<?> eventClass = Class.forName("jdk.jfr.Event");
+                newEvent = lookup.findVirtual(factoryClass, "newEvent", MethodType.methodType(eventClass))
+                        .asType(MethodType.methodType(Object.class, Object.class));
+                isEnabled = lookup.findVirtual(eventClass, "isEnabled", MethodType.methodType(boolean.class))
+                        .asType(MethodType.methodType(boolean.class, Object.class));
+                begin = lookup.findVirtual(eventClass, "begin", MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(void.class, Object.class));
+                set = lookup.findVirtual(eventClass, "set", MethodType.methodType(void.class, int.class, Object.class))
+                        .asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+                commit = lookup.findVirtual(eventClass, "commit", MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(void.class, Object.class));
+                available = AccessController.doPrivileged((PrivilegedAction<Boolean>) Recorder::listen);
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                available = false;
+            }
+
+            AVAILABLE = available;
+            NEW_EVENT = newEvent;
+            IS_ENABLED = isEnabled;
+            BEGIN = begin;
+            SET = set;
+            COMMIT = commit;
+        }
+
+        /**
+         * Registers a listener keeping track of the running recordings.
+         * @return true if the listener was registered.
+         */
+        private static boolean listen() {
+            try {
+                final Class<?> recorderClass = Class.forName("jdk.jfr.FlightRecorder");
+                final Class<?> listenerClass = Class.forName("jdk.jfr.FlightRecorderListener");
+                final Object listener = Proxy.newProxyInstance(FlightRecorderEvents.class.getClassLoader(),
+                        new Class<?>[] { listenerClass }, (proxy, method, args) -> {
+                            switch (method.getName()) {
+                                case "recorderInitialized":
+                                    initialized(args[0]);
+                                    return null;
+                                case "recordingStateChanged":
+                                    changed(args[0]);
+                                    return null;
+                                case "hashCode":
+                                    return System.identityHashCode(proxy);
+                                case "equals":
+                                    return proxy == args[0];
+                                case "toString":
+                                    return FlightRecorderEvents.class.getName() + "$Listener";
+                                default:
+                                    return null;
+                            }
+                        });
+                recorderClass.getMethod("addListener", listenerClass).invoke(null, listener);
+                return true;
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Records every recording already running once the Flight Recorder is initialized.
+         * @param recorder the jdk.jfr.FlightRecorder.
+         */
+        private static void initialized(final Object recorder) {
+            try {
+                final Method getRecordings = Class.forName("jdk.jfr.FlightRecorder").getMethod("getRecordings");
+                for (Object current : (List<?>) getRecordings.invoke(recorder)) {
+                    changed(current);
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Leave the recording state as it was rather than fail the Flight Recorder.
+            }
+        }
+
+        /**
+         * Records a change to the state of a recording.
+         * @param recording the jdk.jfr.Recording whose state changed.
+         */
+        private static void changed(final Object recording) {
+            final Object state;
+            try {
+                state = Class.forName("jdk.jfr.Recording").getMethod("getState").invoke(recording);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return;
+            }
+            synchronized (running) {
+                if ("RUNNING".equals(String.valueOf(state))) {
+                    running.add(recording);
+                } else {
+                    running.remove(recording);
+                }
+                Recorder.recording = !running.isEmpty();
+            }
+        }
+
+        /**
+         * Defines a type of event with jdk.jfr.EventFactory.
+         * @param type the type of event to define.
+         * @return the EventFactory creating events of the type.
+         * @throws ReflectiveOperationException if the type could not be defined.
+         */
+        private static Object define(final Type type) throws ReflectiveOperationException {
+            final Class<?> annotationClass = Class.forName("jdk.jfr.AnnotationElement");
+            final Class<?> descriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+            final Constructor<?> annotation = annotationClass.getConstructor(Class.class, Object.class);
+            final Constructor<?> descriptor = descriptorClass.getConstructor(Class.class, String.class, List.class);
+            final Class<? extends Annotation> name = annotation("Name");
+            final Class<? extends Annotation> label = annotation("Label");
+            final Class<? extends Annotation> description = annotation("Description");
+            final Class<? extends Annotation> category = annotation("Category");
+
+            final List<Object> annotations = new ArrayList<>();
+            annotations.add(annotation.newInstance(name, type.name));
+            annotations.add(annotation.newInstance(label, type.label));
+            annotations.add(annotation.newInstance(description, type.description));
+            annotations.add(annotation.newInstance(category, new String[] { CATEGORY }));
+
+            final List<Object> fields = new ArrayList<>();
+            for (Field field : type.fields) {
+                final List<Object> fieldAnnotations = new ArrayList<>();
+                fieldAnnotations.add(annotation.newInstance(label, field.label));
+                if (field.description != null) {
+                    fieldAnnotations.add(annotation.newInstance(description, field.description));
+                }
+                fields.add(descriptor.newInstance(field.type, field.name, fieldAnnotations));
+            }
+
+            final Method create = Class.forName("jdk.jfr.EventFactory").getMethod("create", List.class, List.class);
+            return AccessController.doPrivileged((PrivilegedAction<Object>) () -> {
+                try {
+                    return create.invoke(null, annotations, fields);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        /**
+         * Loads an annotation of the jdk.jfr package.
+         * @param simpleName the simple name of the annotation.
+         * @return the annotation class.
+         * @throws ClassNotFoundException if the annotation could not be found.
+         */
+        private static Class<? extends Annotation> annotation(final String simpleName) throws ClassNotFoundException {
+            return Class.forName("jdk.jfr." + simpleName).asSubclass(Annotation.class);
+        }
+    }
+
+    //endregion
+}
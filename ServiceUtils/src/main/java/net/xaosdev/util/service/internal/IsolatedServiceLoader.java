@@ -16,28 +16,105 @@
 
 package net.xaosdev.util.service.internal;
 
+import net.xaosdev.util.service.ProviderHandle;
+import net.xaosdev.util.service.Scope;
+import net.xaosdev.util.service.ServiceMetrics;
+import net.xaosdev.util.service.Source;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.security.AccessControlContext;
+import java.security.AccessController;
+import java.security.CodeSource;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.ServiceLoader;
+import java.util.ServiceConfigurationError;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
- * Isolates a ServiceLoader so that it may ONLY load services that are accessible from the provided ClassLoader
+ * Loads services in the manner of a ServiceLoader, but ONLY those that are accessible from the provided ClassLoader
  * and NOT the parent ClassLoaders.
+ *
+ * Isolation happens at the descriptor level: only the provider-configuration files owned by the ClassLoader are read,
+ * and only the classes they name are loaded.  A provider class that nonetheless turns out to be defined by another
+ * ClassLoader is skipped without being instantiated.
+ *
+ * Each declared provider is represented by a ProviderHandle that loads and instantiates it on demand, so that merely
+ * enumerating the providers of a source costs no more than reading its descriptors.  The instances handed out for
+ * each provider are governed by the Scope the loader was created with.
+ *
+ * This loader is safe for concurrent use.  The descriptors are read at most once, while holding a lock, and every
+ * later enumeration of the providers is lock-free.
  * @param <S> the type of services to load.
  */
 public final class IsolatedServiceLoader<S> implements Iterable<S>{
 
     //region Fields (Private)
 
+    /**
+     * The Class identifying the service to load.
+     */
+    private final Class<S> clazz;
+
+    /**
+     * The UUID of the Source being loaded from.
+     */
+    private final UUID sourceUUID;
+
     /**
      * The ClassLoader to isolate to.
      */
     private final ClassLoader classLoader;
 
     /**
-     * The ServiceLoader performing the loading.
+     * The Source being loaded from, used to attribute descriptors and classes when its ClassLoader is shared.
      */
-    private final ServiceLoader<S> serviceLoader;
+    private final Source source;
+
+    /**
+     * The Scope governing how provider instances are shared.
+     */
+    private final Scope scope;
+
+    /**
+     * The context of the creator of this loader, used to discover and instantiate providers if a SecurityManager is
+     * installed, or null if none is.
+     */
+    private final AccessControlContext context;
+
+    /**
+     * The listener notified once the descriptors have been read, or null if none is required.
+     */
+    private final Consumer<? super List<ProviderHandle<S>>> discoveryListener;
+
+    /**
+     * The ServiceMetrics instantiations are reported to.
+     */
+    private final ServiceMetrics metrics;
+
+    /**
+     * The handles of the declared providers, in declaration order, or null if the descriptors have not been read.
+     */
+    private volatile List<LazyProviderHandle<S>> handles = null;
+
+    /**
+     * The handles of the providers defined by the Source, keyed by every supertype of their classes, or null if the
+     * index has not been built.
+     */
+    private volatile Map<Class<?>, List<ProviderHandle<S>>> typeIndex = null;
 
     //endregion
 
@@ -46,12 +123,23 @@ public final class IsolatedServiceLoader<S> implements Iterable<S>{
     /**
      * Creates a new IsolatedServiceLoader.
      *
-     * @param classLoader the ClassLoader to isolate to.
-     * @param serviceLoader the ServiceLoader performing the loading.
+     * @param clazz the Class identifying the service to load.
+     * @param source the Source to load from.
+     * @param scope the Scope governing how provider instances are shared.
+     * @param discoveryListener the listener notified once the descriptors have been read, or null.
+     * @param metrics the ServiceMetrics instantiations are reported to.
      */
-    private IsolatedServiceLoader(final ClassLoader classLoader, ServiceLoader<S> serviceLoader) {
-        this.classLoader = classLoader;
-        this.serviceLoader = serviceLoader;
+    private IsolatedServiceLoader(final Class<S> clazz, final Source source, final Scope scope,
+                                  final Consumer<? super List<ProviderHandle<S>>> discoveryListener,
+                                  final ServiceMetrics metrics) {
+        this.clazz = clazz;
+        this.sourceUUID = source.getUUID();
+        this.classLoader = source.getClassLoader();
+        this.source = source;
+        this.scope = scope;
+        this.discoveryListener = discoveryListener;
+        this.metrics = metrics;
+        this.context = System.getSecurityManager() != null ? AccessController.getContext() : null;
     }
 
     //endregion
@@ -59,57 +147,204 @@ public final class IsolatedServiceLoader<S> implements Iterable<S>{
     //region Interface (Public)
 
     /**
-     * Creates a new IsolatedServiceLoader for specified service using specified ClassLoader.
+     * Creates a new IsolatedServiceLoader for specified service using the ClassLoader of the specified Source.
+     *
+     * Providers found by the loader are shared singletons.
+     * @param clazz the Class identifying the service to load.
+     * @param source the Source to load services from.
+     * @param <T> the type of service to load.
+     * @return an IsolatedService loader loading services of type S from the provided Source.
+     */
+    public static <T> IsolatedServiceLoader<T> load(Class<T> clazz, Source source) {
+        return load(clazz, source, Scope.SINGLETON);
+    }
+
+    /**
+     * Creates a new IsolatedServiceLoader for specified service using the ClassLoader of the specified Source and the
+     * specified Scope.
+     *
+     * @param clazz the Class identifying the service to load.
+     * @param source the Source to load services from.
+     * @param scope the Scope governing how provider instances are shared.
+     * @param <T> the type of service to load.
+     * @return an IsolatedService loader loading services of type S from the provided Source.
+     */
+    public static <T> IsolatedServiceLoader<T> load(Class<T> clazz, Source source, Scope scope) {
+        return load(clazz, source, scope, null);
+    }
+
+    /**
+     * Creates a new IsolatedServiceLoader for specified service using the ClassLoader of the specified Source and the
+     * specified Scope, notifying a listener once its providers have been discovered.
+     *
+     * The listener is called exactly once, on the thread that first reads the descriptors, after they have been read.
+     * @param clazz the Class identifying the service to load.
+     * @param source the Source to load services from.
+     * @param scope the Scope governing how provider instances are shared.
+     * @param discoveryListener the listener receiving the handles of the declared providers, or null.
+     * @param <T> the type of service to load.
+     * @return an IsolatedService loader loading services of type S from the provided Source.
+     */
+    public static <T> IsolatedServiceLoader<T> load(Class<T> clazz, Source source, Scope scope,
+                                                    Consumer<? super List<ProviderHandle<T>>> discoveryListener) {
+        return load(clazz, source, scope, discoveryListener, ServiceMetrics.NONE);
+    }
+
+    /**
+     * Creates a new IsolatedServiceLoader for specified service using the ClassLoader of the specified Source and the
+     * specified Scope, notifying a listener once its providers have been discovered and reporting every instantiation
+     * to a ServiceMetrics.
      *
+     * The listener is called exactly once, on the thread that first reads the descriptors, after they have been read.
      * @param clazz the Class identifying the service to load.
-     * @param classLoader the ClassLoader to load services with.
+     * @param source the Source to load services from.
+     * @param scope the Scope governing how provider instances are shared.
+     * @param discoveryListener the listener receiving the handles of the declared providers, or null.
+     * @param metrics the ServiceMetrics to report instantiations to.
      * @param <T> the type of service to load.
-     * @return an IsolatedService loader loading services of type S using the provided ClassLoader.
+     * @return an IsolatedService loader loading services of type S from the provided Source.
+     */
+    public static <T> IsolatedServiceLoader<T> load(Class<T> clazz, Source source, Scope scope,
+                                                    Consumer<? super List<ProviderHandle<T>>> discoveryListener,
+                                                    ServiceMetrics metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("ServiceMetrics may not be null.");
+        }
+        return new IsolatedServiceLoader<>(clazz, source, scope, discoveryListener, metrics);
+    }
+
+    /**
+     * Gets the handles of all the providers declared by the Source, reading its descriptors if required.
+     *
+     * No provider is loaded or instantiated by this method.  Note that a handle may still turn out to name a class
+     * that is not defined by the Source once it is loaded.
+     * @return an unmodifiable list of the handles of the declared providers, in declaration order.
+     */
+    public List<ProviderHandle<S>> getHandles() {
+        return Collections.unmodifiableList(declared());
+    }
+
+    /**
+     * Gets the handles of the providers declared by the Source if its descriptors have already been read.
+     *
+     * Unlike `getHandles`, this method never reads the descriptors.
+     * @return an unmodifiable list of the handles of the declared providers, or an empty list if the descriptors have
+     *         not been read.
+     */
+    public List<ProviderHandle<S>> getDiscoveredHandles() {
+        final List<LazyProviderHandle<S>> current = handles;
+        return current == null ? Collections.emptyList() : Collections.<ProviderHandle<S>>unmodifiableList(current);
+    }
+
+    /**
+     * Gets the handles of the providers defined by the Source whose classes are subtypes of the provided type.
+     *
+     * The first call loads, without instantiating, every declared provider class in order to build an index from each
+     * of their supertypes to the providers implementing it; every later call is a single lookup.  Providers that are
+     * not defined by the Source are left out of the index.
+     * @param type the type the providers must be subtypes of.
+     * @return an unmodifiable list of the handles of the matching providers, in declaration order.
+     * @throws ServiceConfigurationError if a declared provider class could not be loaded or is not a subtype of the
+     *         service.
+     */
+    public List<ProviderHandle<S>> getHandles(final Class<?> type) {
+        final List<ProviderHandle<S>> matches = indexed().get(type);
+        return matches == null ? Collections.emptyList() : matches;
+    }
+
+    /**
+     * Loads, links and initializes a provider class, then loads and links the classes its declarations refer to.
+     *
+     * The classes referred to are the supertypes of the provider along with the types of its fields, and of the
+     * parameters, results and exceptions of its methods and constructors.  Only classes defined by the ClassLoader of
+     * the Source are warmed up: the classes of the platform and of parent ClassLoaders are left alone.  The provider
+     * is not instantiated.
+     * @param handle the handle of the provider, obtained from this loader.
+     * @return the number of classes warmed up, or zero if the provider is not defined by the Source.
+     * @throws ServiceConfigurationError if the provider class could not be loaded or initialized, or a class it refers
+     *         to could not be loaded.
+     */
+    public int warmUp(final ProviderHandle<S> handle) {
+        final Class<? extends S> provider = handle instanceof LazyProviderHandle ?
+                ((LazyProviderHandle<S>) handle).resolve() : handle.type();
+        if (provider == null) {
+            return 0;
+        }
+
+        return privileged(() -> {
+            try {
+                Class.forName(provider.getName(), true, classLoader);
+
+                final Set<Class<?>> warmed = new HashSet<>();
+                for (Class<?> type = provider; type != null && type.getClassLoader() == classLoader;
+                     type = type.getSuperclass()) {
+                    warmed.add(type);
+                    for (Class<?> dependency : dependencies(type)) {
+                        // Reflecting on the constructors of a class links it.
+                        if (dependency.getClassLoader() == classLoader && warmed.add(dependency)) {
+                            dependency.getDeclaredConstructors();
+                        }
+                    }
+                }
+                return warmed.size();
+            } catch (ClassNotFoundException | LinkageError e) {
+                throw new ServiceConfigurationError(clazz.getName() + ": Provider " + provider.getName() +
+                        " could not be warmed up", e);
+            }
+        });
+    }
+
+    /**
+     * Forgets every provider discovered by this loader, along with the instances created by their handles.
+     *
+     * Once closed, this loader no longer declares any provider and never reads the descriptors of its Source again,
+     * so it no longer refers to any class defined by the Source.  Handles obtained before the loader was closed are
+     * unaffected.
      */
-    public static <T> IsolatedServiceLoader<T> load(Class<T> clazz, ClassLoader classLoader) {
-        final ServiceLoader<T> loader = ServiceLoader.load(clazz, classLoader);
-        return new IsolatedServiceLoader<>(classLoader, loader);
+    public void close() {
+        synchronized (this) {
+            handles = Collections.emptyList();
+            typeIndex = Collections.emptyMap();
+        }
     }
 
     /**
-     * Wraps the iterator of a ServiceLoader to isolate (ignore) services not governed by the input ClassLoader.
+     * Iterates over the services governed by the input ClassLoader, ignoring those of its parents.
      * @return an iterator over services of type S that pass isolation checks.
      */
     public Iterator<S> iterator() {
         return new Iterator<S>() {
 
             /**
-             * An active iterator reference for loading services.
+             * The handles of the declared providers.
              */
-            private Iterator<S> iterator = serviceLoader.iterator();
+            private final Iterator<LazyProviderHandle<S>> iterator = declared().iterator();
 
             /**
-             * The next, valid service found by this loader.
+             * The next handle that passed isolation checks.
              */
-            private S next = null;
+            private LazyProviderHandle<S> next = null;
 
             @Override
             public boolean hasNext() {
-                if (next != null) {
-                    return true;
-                }
-
-                do {
+                while (next == null) {
                     if (!iterator.hasNext()) {
                         return false;
                     }
-                    next = iterator.next();
-                } while (next.getClass().getClassLoader() != classLoader);
-
+                    final LazyProviderHandle<S> candidate = iterator.next();
+                    if (candidate.resolve() != null) {
+                        next = candidate;
+                    }
+                }
                 return true;
             }
 
             @Override
             public S next() {
                 if (hasNext()) {
-                    S retVal = next;
+                    final LazyProviderHandle<S> handle = next;
                     next = null;
-                    return retVal;
+                    return handle.get();
                 } else {
                     throw new NoSuchElementException();
                 }
@@ -123,4 +358,237 @@ public final class IsolatedServiceLoader<S> implements Iterable<S>{
     }
 
     //endregion
+
+    //region Interface (Package-Private)
+
+    /**
+     * Gets the name of the service being loaded.
+     * @return the name of the service being loaded.
+     */
+    String getServiceName() {
+        return clazz.getName();
+    }
+
+    /**
+     * Gets the UUID of the Source being loaded from.
+     * @return the UUID of the Source being loaded from.
+     */
+    UUID getSourceUUID() {
+        return sourceUUID;
+    }
+
+    /**
+     * Gets the Scope governing how provider instances are shared.
+     * @return the Scope of this loader.
+     */
+    Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Loads, but does not initialize, a provider class declared by a descriptor.
+     * @param name the fully qualified name of the provider class.
+     * @return the provider class, or null if it is not defined by the ClassLoader this loader is isolated to or, when
+     *         that ClassLoader is shared, comes from a location the Source does not contain.
+     * @throws ServiceConfigurationError if the class could not be found or is not a subtype of the service.
+     */
+    Class<? extends S> loadProvider(final String name) {
+        final Object event = FlightRecorderEvents.PROVIDER_LOAD.begin();
+        try {
+            return isolate(name);
+        } finally {
+            FlightRecorderEvents.PROVIDER_LOAD.commit(event, sourceUUID, clazz, name);
+        }
+    }
+
+    /**
+     * Creates a new instance of a provider using its no-argument constructor.
+     *
+     * The outcome, and the time taken by the constructor, are reported to the ServiceMetrics of this loader.
+     * @param provider the provider class to instantiate.
+     * @return the new instance.
+     * @throws ServiceConfigurationError if the provider could not be instantiated.
+     */
+    S instantiate(final Class<? extends S> provider) {
+        final Object event = FlightRecorderEvents.PROVIDER_INSTANTIATION.begin();
+        final long start = System.nanoTime();
+        try {
+            final S instance = privileged(() -> {
+                try {
+                    return clazz.cast(provider.getConstructor().newInstance());
+                } catch (Throwable x) {
+                    throw new ServiceConfigurationError(clazz.getName() + ": Provider " + provider.getName() +
+                            " could not be instantiated", x);
+                }
+            });
+            metrics.providerInstantiated(sourceUUID, provider.getName(), System.nanoTime() - start);
+            return instance;
+        } catch (ServiceConfigurationError e) {
+            metrics.instantiationFailed(sourceUUID, provider.getName(), e);
+            throw e;
+        } finally {
+            FlightRecorderEvents.PROVIDER_INSTANTIATION.commit(event, sourceUUID, clazz, provider);
+        }
+    }
+
+    /**
+     * Gets the handles of all the providers declared by the Source, reading its descriptors if required.
+     * @return the handles of the declared providers, in declaration order.
+     */
+    List<LazyProviderHandle<S>> declared() {
+        List<LazyProviderHandle<S>> current = handles;
+        if (current == null) {
+            boolean discovered = false;
+            synchronized (this) {
+                current = handles;
+                if (current == null) {
+                    final List<LazyProviderHandle<S>> declared = new ArrayList<>();
+                    for (String name : privileged(() -> ServiceDescriptors.read(clazz, classLoader, source::contains))) {
+                        declared.add(new LazyProviderHandle<>(this, name));
+                    }
+                    current = declared;
+                    handles = current;
+                    discovered = true;
+                }
+            }
+
+            // Notify outside the lock so the listener may freely enumerate the providers itself.
+            if (discovered && discoveryListener != null) {
+                discoveryListener.accept(Collections.<ProviderHandle<S>>unmodifiableList(current));
+            }
+        }
+        return current;
+    }
+
+    //endregion
+
+    //region Interface (Private)
+
+    /**
+     * Loads, but does not initialize, a provider class and checks that it is defined by the Source.
+     * @param name the fully qualified name of the provider class.
+     * @return the provider class, or null if it is not defined by the Source.
+     * @throws ServiceConfigurationError if the class could not be found or is not a subtype of the service.
+     */
+    private Class<? extends S> isolate(final String name) {
+        return privileged(() -> {
+            final Class<?> provider;
+            try {
+                provider = Class.forName(name, false, classLoader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                throw new ServiceConfigurationError(clazz.getName() + ": Provider " + name + " not found", e);
+            }
+
+            if (provider.getClassLoader() != classLoader) {
+                return null;
+            }
+            final CodeSource codeSource = provider.getProtectionDomain().getCodeSource();
+            if (codeSource != null && codeSource.getLocation() != null && !source.contains(codeSource.getLocation())) {
+                return null;
+            }
+            if (!clazz.isAssignableFrom(provider)) {
+                throw new ServiceConfigurationError(clazz.getName() + ": Provider " + name + " not a subtype");
+            }
+            return provider.asSubclass(clazz);
+        });
+    }
+
+    /**
+     * Gets the index of the providers defined by the Source by supertype, building it if required.
+     * @return the index of the providers by supertype.
+     */
+    private Map<Class<?>, List<ProviderHandle<S>>> indexed() {
+        Map<Class<?>, List<ProviderHandle<S>>> current = typeIndex;
+        if (current == null) {
+            synchronized (this) {
+                current = typeIndex;
+                if (current == null) {
+                    final Map<Class<?>, List<ProviderHandle<S>>> index = new HashMap<>();
+                    for (LazyProviderHandle<S> handle : declared()) {
+                        final Class<? extends S> provider = handle.resolve();
+                        if (provider != null) {
+                            for (Class<?> supertype : supertypes(provider)) {
+                                index.computeIfAbsent(supertype, key -> new ArrayList<>()).add(handle);
+                            }
+                        }
+                    }
+                    index.replaceAll((key, list) -> Collections.unmodifiableList(list));
+                    current = index;
+                    typeIndex = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Collects a class along with every class it extends and interface it implements, directly or not.
+     * @param type the class to collect the supertypes of.
+     * @return the class and all of its supertypes.
+     */
+    private static Set<Class<?>> supertypes(final Class<?> type) {
+        final Set<Class<?>> supertypes = new HashSet<>();
+        final Deque<Class<?>> pending = new ArrayDeque<>();
+        pending.push(type);
+        while (!pending.isEmpty()) {
+            final Class<?> current = pending.pop();
+            if (supertypes.add(current)) {
+                if (current.getSuperclass() != null) {
+                    pending.push(current.getSuperclass());
+                }
+                for (Class<?> implemented : current.getInterfaces()) {
+                    pending.push(implemented);
+                }
+            }
+        }
+        return supertypes;
+    }
+
+    /**
+     * Collects the classes referred to by the declarations of a class, loading them if required.
+     * @param type the class to collect the dependencies of.
+     * @return the interfaces of the class and the types used by its fields, methods and constructors, with arrays
+     *         replaced by their element types.
+     */
+    private static Set<Class<?>> dependencies(final Class<?> type) {
+        final List<Class<?>> referenced = new ArrayList<>(Arrays.asList(type.getInterfaces()));
+        for (Field field : type.getDeclaredFields()) {
+            referenced.add(field.getType());
+        }
+        for (Method method : type.getDeclaredMethods()) {
+            referenced.add(method.getReturnType());
+            referenced.addAll(Arrays.asList(method.getParameterTypes()));
+            referenced.addAll(Arrays.asList(method.getExceptionTypes()));
+        }
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            referenced.addAll(Arrays.asList(constructor.getParameterTypes()));
+            referenced.addAll(Arrays.asList(constructor.getExceptionTypes()));
+        }
+
+        final Set<Class<?>> dependencies = new HashSet<>();
+        for (Class<?> dependency : referenced) {
+            while (dependency.isArray()) {
+                dependency = dependency.getComponentType();
+            }
+            if (!dependency.isPrimitive()) {
+                dependencies.add(dependency);
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * Runs an action with the permissions of the creator of this loader if a SecurityManager is installed.
+     * @param action the action to run.
+     * @param <R> the type of the result of the action.
+     * @return the result of the action.
+     */
+    private <R> R privileged(final PrivilegedAction<R> action) {
+        if (context == null) {
+            return action.run();
+        }
+        return AccessController.doPrivileged(action, context);
+    }
+
+    //endregion
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.internal;
+
+import net.xaosdev.util.service.Priority;
+import net.xaosdev.util.service.ProviderHandle;
+
+import java.util.ServiceConfigurationError;
+import java.util.UUID;
+
+/**
+ * A ProviderHandle that loads its provider class and instances on demand through an IsolatedServiceLoader.
+ *
+ * This handle is safe for concurrent use.  Its class is resolved at most once and, for the SINGLETON scope, so is its
+ * instance.  The instances it keeps for reuse are referenced by the handle alone, so none outlives it.
+ * @param <S> the type of service the provider implements.
+ */
+public final class LazyProviderHandle<S> implements ProviderHandle<S> {
+
+    //region Fields (Private)
+
+    /**
+     * The loader that declared this provider.
+     */
+    private final IsolatedServiceLoader<S> loader;
+
+    /**
+     * The fully qualified name of the provider class.
+     */
+    private final String name;
+
+    /**
+     * The provider class, or null if it has not been resolved or is not defined by the isolated ClassLoader.
+     */
+    private volatile Class<? extends S> type = null;
+
+    /**
+     * The priority declared by the provider class, valid once the class has been resolved.
+     */
+    private volatile int priority = 0;
+
+    /**
+     * Whether or not the provider class has been resolved.
+     */
+    private volatile boolean resolved = false;
+
+    /**
+     * The shared instance of the provider, or null if not created yet.  Only used by the SINGLETON scope.
+     */
+    private volatile S singleton = null;
+
+    /**
+     * The thread-confined instances of the provider, keyed by the thread they are confined to.  Only used by the
+     * THREAD scope.
+     *
+     * The instances are held by this handle rather than by the threads, so that they, and the ClassLoader of their
+     * Source, become unreachable along with this handle even while the threads that created them keep running.
+     */
+    private final WeakIdentityMap<Thread, S> threadInstances = new WeakIdentityMap<>();
+
+    //endregion
+
+    //region Constructors (Package-Private)
+
+    /**
+     * Creates a new LazyProviderHandle.
+     * @param loader the loader that declared this provider.
+     * @param name the fully qualified name of the provider class.
+     */
+    LazyProviderHandle(final IsolatedServiceLoader<S> loader, final String name) {
+        this.loader = loader;
+        this.name = name;
+    }
+
+    //endregion
+
+    //region Interface (ProviderHandle)
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public UUID getSourceUUID() {
+        return loader.getSourceUUID();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Class<? extends S> type() {
+        final Class<? extends S> provider = resolve();
+        if (provider == null) {
+            throw new ServiceConfigurationError(loader.getServiceName() + ": Provider " + name +
+                    " not defined by its source");
+        }
+        return provider;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int getPriority() {
+        type();
+        return priority;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public S get() {
+        switch (loader.getScope()) {
+            case PROTOTYPE:
+                return loader.instantiate(type());
+            case THREAD:
+                final Thread thread = Thread.currentThread();
+                S instance = threadInstances.get(thread);
+                if (instance == null) {
+                    instance = loader.instantiate(type());
+                    threadInstances.put(thread, instance);
+                }
+                return instance;
+            default:
+                S shared = singleton;
+                if (shared == null) {
+                    synchronized (this) {
+                        shared = singleton;
+                        if (shared == null) {
+                            shared = loader.instantiate(type());
+                            singleton = shared;
+                        }
+                    }
+                }
+                return shared;
+        }
+    }
+
+    //endregion
+
+    //region Interface (Object)
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String toString() {
+        return "ProviderHandle[" + name + " from " + loader.getSourceUUID() + "]";
+    }
+
+    //endregion
+
+    //region Interface (Package-Private)
+
+    /**
+     * Loads the provider class if it has not been already.
+     * @return the provider class, or null if it is not defined by the ClassLoader the loader is isolated to.
+     * @throws ServiceConfigurationError if the class could not be loaded or is not a subtype of the service.
+     */
+    Class<? extends S> resolve() {
+        if (!resolved) {
+            synchronized (this) {
+                if (!resolved) {
+                    type = loader.loadProvider(name);
+                    if (type != null) {
+                        final Priority declared = type.getAnnotation(Priority.class);
+                        priority = declared != null ? declared.value() : 0;
+                    }
+                    resolved = true;
+                }
+            }
+        }
+        return type;
+    }
+
+    //endregion
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.internal;
+
+import net.xaosdev.util.service.security.SourceFilteringPolicy;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.security.AccessControlContext;
+import java.security.AccessController;
+import java.security.DomainCombiner;
+import java.security.Permission;
+import java.security.Policy;
+import java.security.PrivilegedAction;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which permissions have been granted to which calling contexts, so that a caller repeatedly performing the
+ * same secured operation is only checked against the Policy once.
+ *
+ * A calling context is identified by the set of ProtectionDomains it holds.  Only successful checks are remembered;
+ * every other check is delegated to the installed SecurityManager and throws exactly as it would.  Decisions are only
+ * remembered while the installed SecurityManager is a plain java.lang.SecurityManager and the installed Policy is a
+ * SourceFilteringPolicy, which calls `invalidate` whenever its permissions change; under any other SecurityManager or
+ * Policy, every check is delegated.  Contexts whose permissions depend on more than their ProtectionDomains, such as
+ * those of limited privileged actions or those with a DomainCombiner, are never remembered either.  Every decision is
+ * forgotten when the SecurityManager or the Policy is replaced, or when `invalidate` is called.
+ *
+ * ProtectionDomains are only weakly referenced, so remembering a decision never keeps a ProtectionDomain, or the
+ * ClassLoader of a Source, alive; a decision is simply forgotten once one of its domains has been collected.  The
+ * number of calling contexts remembered is also bounded; once the bound is reached, every decision is forgotten.
+ */
+public final class PermissionCache {
+
+    //region Fields (Private)
+
+    /**
+     * The maximum number of calling contexts remembered at once.
+     */
+    private static final int MAXIMUM_CONTEXTS = 256;
+
+    /**
+     * The decisions made since the last invalidation.
+     */
+    private static volatile Generation generation = new Generation(null, null);
+
+    //endregion
+
+    //region Constructors (Private)
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private PermissionCache() {}
+
+    //endregion
+
+    //region Interface (Public)
+
+    /**
+     * Determines whether the calling context has the provided permission, in the same manner as the installed
+     * SecurityManager.
+     *
+     * Does nothing if no SecurityManager is installed.
+     * @param permission the permission to check.
+     * @throws SecurityException if the calling context does not have the permission.
+     */
+    public static void checkPermission(final Permission permission) {
+        final SecurityManager manager = System.getSecurityManager();
+        if (manager == null) {
+            return;
+        }
+        if (manager.getClass() != SecurityManager.class) {
+            manager.checkPermission(permission);
+            return;
+        }
+
+        final Policy policy = AccessController.doPrivileged((PrivilegedAction<Policy>) Policy::getPolicy);
+        if (!(policy instanceof SourceFilteringPolicy)) {
+            manager.checkPermission(permission);
+            return;
+        }
+        Generation current = generation;
+        if (current.manager != manager || current.policy != policy) {
+            current = new Generation(manager, policy);
+            generation = current;
+        }
+
+        final AccessControlContext context = AccessController.getContext();
+        final Set<Permission> granted = current.get(context);
+        if (granted != null && granted.contains(permission)) {
+            return;
+        }
+
+        manager.checkPermission(permission);
+
+        if (granted != null) {
+            granted.add(permission);
+        } else {
+            final ProtectionDomain[] domains = getDomains(context);
+            if (new AccessControlContext(domains).equals(context)) {
+                current.put(domains, context.hashCode(), permission);
+            }
+        }
+    }
+
+    /**
+     * Forgets every decision made so far.
+     *
+     * The SourceFilteringPolicy calls this whenever its permissions change, including when it is refreshed.
+     */
+    public static void invalidate() {
+        generation = new Generation(null, null);
+    }
+
+    //endregion
+
+    //region Interface (Private)
+
+    /**
+     * Gets the ProtectionDomains held by a calling context.
+     * @param context the calling context.
+     * @return the ProtectionDomains of the context.
+     */
+    private static ProtectionDomain[] getDomains(final AccessControlContext context) {
+        return AccessController.doPrivileged((PrivilegedAction<ProtectionDomain[]>) () -> {
+            final DomainCollector collector = new DomainCollector();
+            AccessController.doPrivileged((PrivilegedAction<AccessControlContext>) AccessController::getContext,
+                    new AccessControlContext(context, collector));
+            return collector.domains;
+        });
+    }
+
+    //endregion
+
+    //region Classes (Private)
+
+    /**
+     * The decisions made under a single SecurityManager and Policy.
+     */
+    private static final class Generation {
+
+        /**
+         * The SecurityManager the decisions were made under.
+         */
+        private final SecurityManager manager;
+
+        /**
+         * The Policy the decisions were made under.
+         */
+        private final Policy policy;
+
+        /**
+         * The permissions granted, keyed by the set of ProtectionDomains of a calling context.
+         */
+        private final Map<Object, Set<Permission>> granted = new ConcurrentHashMap<>();
+
+        /**
+         * The queue the references to collected ProtectionDomains are enqueued on.
+         */
+        private final ReferenceQueue<ProtectionDomain> collected = new ReferenceQueue<>();
+
+        /**
+         * Creates a new Generation.
+         * @param manager the SecurityManager the decisions are made under.
+         * @param policy the Policy the decisions are made under.
+         */
+        private Generation(final SecurityManager manager, final Policy policy) {
+            this.manager = manager;
+            this.policy = policy;
+        }
+
+        /**
+         * Gets the permissions granted to a calling context.
+         * @param context the calling context.
+         * @return the permissions granted to the context, or null if none have been remembered.
+         */
+        private Set<Permission> get(final AccessControlContext context) {
+            return granted.get(new Lookup(context));
+        }
+
+        /**
+         * Remembers a permission granted to a calling context without any permissions remembered yet.
+         * @param domains the ProtectionDomains of the calling context.
+         * @param hash the hash code of the calling context.
+         * @param permission the granted permission.
+         */
+        private void put(final ProtectionDomain[] domains, final int hash, final Permission permission) {
+            Reference<? extends ProtectionDomain> reference;
+            while ((reference = collected.poll()) != null) {
+                granted.remove(((DomainReference) reference).key);
+            }
+            if (granted.size() >= MAXIMUM_CONTEXTS) {
+                granted.clear();
+            }
+            granted.computeIfAbsent(new Domains(domains, hash, collected), key -> ConcurrentHashMap.newKeySet())
+                    .add(permission);
+        }
+    }
+
+    /**
+     * The weakly referenced ProtectionDomains of a calling context, equal only to itself and to lookups of a calling
+     * context holding the same domains.
+     */
+    private static final class Domains {
+
+        /**
+         * The ProtectionDomains of the calling context.
+         */
+        private final List<DomainReference> domains;
+
+        /**
+         * The hash code of the calling context.
+         */
+        private final int hash;
+
+        /**
+         * Creates a new Domains.
+         * @param domains the ProtectionDomains of the calling context.
+         * @param hash the hash code of the calling context.
+         * @param queue the queue to enqueue the references to the domains on once collected.
+         */
+        private Domains(final ProtectionDomain[] domains, final int hash,
+                        final ReferenceQueue<ProtectionDomain> queue) {
+            this.domains = new ArrayList<>(domains.length);
+            for (final ProtectionDomain domain : domains) {
+                this.domains.add(new DomainReference(domain, this, queue));
+            }
+            this.hash = hash;
+        }
+
+        /**
+         * Determines whether a calling context holds exactly these ProtectionDomains.
+         * @param context the calling context.
+         * @return true if the context holds these domains, false otherwise or if one of them has been collected.
+         */
+        private boolean matches(final AccessControlContext context) {
+            final ProtectionDomain[] held = new ProtectionDomain[domains.size()];
+            for (int index = 0; index < held.length; index++) {
+                held[index] = domains.get(index).get();
+                if (held[index] == null) {
+                    return false;
+                }
+            }
+            return new AccessControlContext(held).equals(context);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (o instanceof Lookup) {
+                return o.equals(this);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A weakly referenced ProtectionDomain, which knows the key it belongs to so that the key can be removed once the
+     * domain has been collected.
+     */
+    private static final class DomainReference extends WeakReference<ProtectionDomain> {
+
+        /**
+         * The key this domain belongs to.
+         */
+        private final Domains key;
+
+        /**
+         * Creates a new DomainReference.
+         * @param domain the ProtectionDomain.
+         * @param key the key the domain belongs to.
+         * @param queue the queue to enqueue this reference on once the domain has been collected.
+         */
+        private DomainReference(final ProtectionDomain domain, final Domains key,
+                                final ReferenceQueue<ProtectionDomain> queue) {
+            super(domain, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * A short-lived key used to find the decisions made for a calling context.
+     */
+    private static final class Lookup {
+
+        /**
+         * The calling context being looked up.
+         */
+        private final AccessControlContext context;
+
+        /**
+         * Creates a new Lookup.
+         * @param context the calling context being looked up.
+         */
+        private Lookup(final AccessControlContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Domains && ((Domains) o).matches(context);
+        }
+
+        @Override
+        public int hashCode() {
+            return context.hashCode();
+        }
+    }
+
+    /**
+     * A DomainCombiner that records the ProtectionDomains assigned to the context it is combined with.
+     */
+    private static final class DomainCollector implements DomainCombiner {
+
+        /**
+         * The ProtectionDomains assigned to the context.
+         */
+        private ProtectionDomain[] domains = new ProtectionDomain[0];
+
+        @Override
+        public ProtectionDomain[] combine(final ProtectionDomain[] currentDomains,
+                                          final ProtectionDomain[] assignedDomains) {
+            if (assignedDomains != null) {
+                domains = assignedDomains.clone();
+            }
+            return assignedDomains;
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.internal;
+
+import net.xaosdev.util.service.ProviderIndex;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Reads the provider-configuration files ("META-INF/services/...") that belong to a single ClassLoader.
+ *
+ * Only the descriptors the ClassLoader can see but its parent cannot are considered its own.  This allows a loader to
+ * be isolated without loading, let alone instantiating, any provider that is merely visible through its parents.
+ *
+ * A jar or directory whose ProviderIndex lists a service is read through its index alone for that service; its
+ * provider-configuration file for the service is ignored.  Services its index does not list are still read from their
+ * provider-configuration files.  If every URL of a URLClassLoader has an index listing the service, the
+ * provider-configuration files are not even looked up.  Either way, providers are declared in the order the
+ * ClassLoader finds their jars and directories, just as with java.util.ServiceLoader.
+ *
+ * When several Sources share a ClassLoader, each Source further restricts the descriptors considered its own to those
+ * it contains (see Source.contains).
+ */
+public final class ServiceDescriptors {
+
+    //region Fields (Public)
+
+    /**
+     * The directory, within a ClassLoader's resources, that provider-configuration files are located in.
+     */
+    public static final String PREFIX = "META-INF/services/";
+
+    //endregion
+
+    //region Constructors (Private)
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ServiceDescriptors() {}
+
+    //endregion
+
+    //region Interface (Public)
+
+    /**
+     * Reads the names of the providers of a service declared by the descriptors owned by a ClassLoader.
+     *
+     * @param clazz the Class identifying the service.
+     * @param classLoader the ClassLoader whose descriptors should be read.
+     * @return the names of the declared providers, in declaration order and without duplicates.
+     * @throws ServiceConfigurationError if a descriptor could not be located or read.
+     */
+    public static List<String> read(final Class<?> clazz, final ClassLoader classLoader) {
+        return read(clazz, classLoader, url -> true);
+    }
+
+    /**
+     * Reads the names of the providers of a service declared by the descriptors owned by a ClassLoader and located
+     * where the provided predicate allows.
+     *
+     * @param clazz the Class identifying the service.
+     * @param classLoader the ClassLoader whose descriptors should be read.
+     * @param owned tests whether the URL of a descriptor, or of a location of a URLClassLoader, should be considered.
+     * @return the names of the declared providers, in declaration order and without duplicates.
+     * @throws ServiceConfigurationError if a descriptor could not be located or read.
+     */
+    public static List<String> read(final Class<?> clazz, final ClassLoader classLoader, final Predicate<URL> owned) {
+        final String name = PREFIX + clazz.getName();
+        final Set<String> providers = new LinkedHashSet<>();
+        try {
+            final Map<String, List<String>> indexed = new LinkedHashMap<>();
+            for (URL url : getOwnedResources(ProviderIndex.LOCATION, classLoader, owned)) {
+                try (InputStream in = open(url)) {
+                    final List<String> listed = ProviderIndex.read(in).get(clazz.getName());
+                    if (listed != null) {
+                        indexed.put(getRoot(url, ProviderIndex.LOCATION), listed);
+                    }
+                }
+            }
+
+            if (isFullyIndexed(classLoader, owned, indexed.keySet())) {
+                indexed.values().forEach(providers::addAll);
+            } else {
+                // Both enumerations follow the search order of the ClassLoader, so the indexed locations are merged
+                // into the provider-configuration files at the points where the two share a location.
+                final Iterator<Map.Entry<String, List<String>>> pending = indexed.entrySet().iterator();
+                final Set<String> merged = new HashSet<>();
+                for (URL url : getOwnedResources(name, classLoader, owned)) {
+                    final String root = getRoot(url, name);
+                    if (!indexed.containsKey(root)) {
+                        parse(clazz, url, providers);
+                        continue;
+                    }
+                    while (!merged.contains(root) && pending.hasNext()) {
+                        final Map.Entry<String, List<String>> index = pending.next();
+                        providers.addAll(index.getValue());
+                        merged.add(index.getKey());
+                    }
+                }
+                pending.forEachRemaining(index -> providers.addAll(index.getValue()));
+            }
+        } catch (IOException e) {
+            throw new ServiceConfigurationError(clazz.getName() + ": Error locating configuration files", e);
+        }
+        return new ArrayList<>(providers);
+    }
+
+    //endregion
+
+    //region Interface (Private)
+
+    /**
+     * Opens a resource without caching it.
+     *
+     * Resources within jar files are otherwise read through a JVM-wide cache of open jar files, which would keep the
+     * jar of a Source open, and locked on some platforms, after its ClassLoader is closed.
+     * @param url the location of the resource.
+     * @return a stream reading the resource.
+     * @throws IOException if the resource could not be opened.
+     */
+    private static InputStream open(final URL url) throws IOException {
+        final URLConnection connection = url.openConnection();
+        connection.setUseCaches(false);
+        return connection.getInputStream();
+    }
+
+    /**
+     * Locates the resources of a given name that are visible to a ClassLoader but not to its parent.
+     * @param name the name of the resources.
+     * @param classLoader the ClassLoader to locate resources with.
+     * @param owned tests whether the URL of a resource should be considered.
+     * @return the URLs of the resources owned by the ClassLoader.
+     * @throws IOException if the resources could not be enumerated.
+     */
+    private static List<URL> getOwnedResources(final String name, final ClassLoader classLoader,
+                                               final Predicate<URL> owned) throws IOException {
+        final List<URL> resources = Collections.list(classLoader.getResources(name));
+        resources.removeIf(owned.negate());
+        final ClassLoader parent = classLoader.getParent();
+        if (parent == null || resources.isEmpty()) {
+            return resources;
+        }
+
+        final Set<String> inherited = new HashSet<>();
+        final Enumeration<URL> parentResources = parent.getResources(name);
+        while (parentResources.hasMoreElements()) {
+            inherited.add(parentResources.nextElement().toExternalForm());
+        }
+        resources.removeIf(url -> inherited.contains(url.toExternalForm()));
+        return resources;
+    }
+
+    /**
+     * Gets the location of the jar or directory a resource was found in.
+     * @param url the location of the resource.
+     * @param name the name the resource was located with.
+     * @return the external form of the location of the resource, minus its name.
+     */
+    private static String getRoot(final URL url, final String name) {
+        final String location = url.toExternalForm();
+        return location.endsWith(name) ? location.substring(0, location.length() - name.length()) : location;
+    }
+
+    /**
+     * Checks whether every considered location a ClassLoader loads from has an index listing the service.
+     * @param classLoader the ClassLoader to check.
+     * @param owned tests whether a location of the ClassLoader should be considered.
+     * @param indexed the locations with an index listing the service.
+     * @return true if no provider-configuration files need to be looked up.
+     */
+    private static boolean isFullyIndexed(final ClassLoader classLoader, final Predicate<URL> owned,
+                                          final Set<String> indexed) {
+        if (indexed.isEmpty() || !(classLoader instanceof URLClassLoader)) {
+            return false;
+        }
+
+        int locations = 0;
+        for (URL url : ((URLClassLoader) classLoader).getURLs()) {
+            if (owned.test(url)) {
+                locations++;
+            }
+        }
+        return locations <= indexed.size();
+    }
+
+    /**
+     * Parses a single provider-configuration file.
+     *
+     * The format is the one understood by java.util.ServiceLoader: one fully qualified class name per line, with
+     * everything following a '#' ignored.
+     * @param clazz the Class identifying the service.
+     * @param url the location of the provider-configuration file.
+     * @param providers the set to add the names of the declared providers to.
+     * @throws IOException if the file could not be read.
+     */
+    private static void parse(final Class<?> clazz, final URL url, final Set<String> providers) throws IOException {
+        try (InputStream in = open(url);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.indexOf(' ') >= 0 || line.indexOf('\t') >= 0) {
+                    throw new ServiceConfigurationError(clazz.getName() + ": " + url + ": Illegal configuration-file " +
+                            "syntax");
+                }
+                providers.add(line);
+            }
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.internal;
+
+import net.xaosdev.util.service.ProviderHandle;
+import net.xaosdev.util.service.Source;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable, versioned view of the Sources and IsolatedServiceLoaders registered with a Service.
+ *
+ * A Service publishes a new snapshot for every mutation and never modifies a snapshot once it has been published.
+ * This allows readers to use a snapshot without any locking while writers swap in a replacement atomically.
+ *
+ * Lookups of providers by subtype are memoized per snapshot, so that repeated lookups only cost as much as the number
+ * of providers they return.  Since each mutation publishes a new snapshot, these results never outlive the Sources
+ * they were computed from.  The same holds for the ranking of providers by priority.
+ * @param <T> the SPI the loaders within this snapshot load.
+ */
+public final class ServiceSnapshot<T> {
+
+    //region Fields (Private)
+
+    /**
+     * The version of this snapshot.  Each published snapshot has a version one greater than the one it replaced.
+     */
+    private final long version;
+
+    /**
+     * A mapping of UUIDs to Sources, in the order they were added.
+     */
+    private final Map<UUID, Source> sourceMap;
+
+    /**
+     * A mapping of UUIDs to IsolatedServiceLoaders, in the order they were added.
+     */
+    private final Map<UUID, IsolatedServiceLoader<T>> loaderMap;
+
+    /**
+     * The IsolatedServiceLoaders, in the order they were added, for indexed traversal.
+     */
+    private final List<IsolatedServiceLoader<T>> loaders;
+
+    /**
+     * The handles of the providers within this snapshot, keyed by the subtype of the SPI they were looked up by.
+     */
+    private final ConcurrentMap<Class<?>, List<ProviderHandle<T>>> subtypes = new ConcurrentHashMap<>();
+
+    /**
+     * The handles of the providers within this snapshot, from most to least preferred, or null if not ranked yet.
+     */
+    private volatile List<ProviderHandle<T>> ranked = null;
+
+    //endregion
+
+    //region Constructors (Private)
+
+    /**
+     * Creates a new ServiceSnapshot.
+     *
+     * The maps passed in are taken over by the snapshot and must not be modified afterwards.
+     * @param version the version of the snapshot.
+     * @param sourceMap the mapping of UUIDs to Sources.
+     * @param loaderMap the mapping of UUIDs to IsolatedServiceLoaders.
+     */
+    private ServiceSnapshot(final long version, final Map<UUID, Source> sourceMap,
+                            final Map<UUID, IsolatedServiceLoader<T>> loaderMap) {
+        this.version = version;
+        this.sourceMap = Collections.unmodifiableMap(sourceMap);
+        this.loaderMap = Collections.unmodifiableMap(loaderMap);
+        this.loaders = Collections.unmodifiableList(new ArrayList<>(loaderMap.values()));
+    }
+
+    //endregion
+
+    //region Interface (Public)
+
+    /**
+     * Creates the initial, empty snapshot.
+     * @param <T> the SPI the loaders within the snapshot load.
+     * @return an empty snapshot with a version of zero.
+     */
+    public static <T> ServiceSnapshot<T> empty() {
+        return new ServiceSnapshot<>(0L, new LinkedHashMap<>(), new LinkedHashMap<>());
+    }
+
+    /**
+     * Gets the version of this snapshot.
+     * @return the version of this snapshot.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Checks if a Source with the provided UUID is present in this snapshot.
+     * @param uuid the UUID of the Source.
+     * @return true if the Source is present.
+     */
+    public boolean contains(final UUID uuid) {
+        return sourceMap.containsKey(uuid);
+    }
+
+    /**
+     * Gets the Source with the provided UUID.
+     * @param uuid the UUID of the Source.
+     * @return the Source or null if none is present.
+     */
+    public Source getSource(final UUID uuid) {
+        return sourceMap.get(uuid);
+    }
+
+    /**
+     * Gets the IsolatedServiceLoader of the Source with the provided UUID.
+     * @param uuid the UUID of the Source.
+     * @return the IsolatedServiceLoader or null if no such Source is present.
+     */
+    public IsolatedServiceLoader<T> getLoader(final UUID uuid) {
+        return loaderMap.get(uuid);
+    }
+
+    /**
+     * Gets an unmodifiable view of the Sources within this snapshot.
+     * @return the Sources within this snapshot, in the order they were added.
+     */
+    public Collection<Source> getSources() {
+        return sourceMap.values();
+    }
+
+    /**
+     * Gets an unmodifiable list of the IsolatedServiceLoaders within this snapshot.
+     * @return the IsolatedServiceLoaders within this snapshot, in the order their Sources were added.
+     */
+    public List<IsolatedServiceLoader<T>> getLoaders() {
+        return loaders;
+    }
+
+    /**
+     * Gets the handles of the providers within this snapshot whose classes are subtypes of the provided type.
+     *
+     * The result is computed from the index of each IsolatedServiceLoader the first time a type is looked up, and
+     * reused afterwards.
+     * @param type the type the providers must be subtypes of.
+     * @return an unmodifiable list of the handles of the matching providers, in the order of the service stream.
+     */
+    public List<ProviderHandle<T>> getHandles(final Class<?> type) {
+        List<ProviderHandle<T>> matches = subtypes.get(type);
+        if (matches == null) {
+            // Computed outside the map so that loading provider classes never blocks lookups of other types.
+            final List<ProviderHandle<T>> computed = new ArrayList<>();
+            for (IsolatedServiceLoader<T> loader : loaders) {
+                computed.addAll(loader.getHandles(type));
+            }
+            matches = Collections.unmodifiableList(computed);
+            final List<ProviderHandle<T>> previous = subtypes.putIfAbsent(type, matches);
+            if (previous != null) {
+                matches = previous;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Gets the handles of the providers within this snapshot, from most to least preferred.
+     *
+     * Providers are ranked by the priority of their Source, then by their own priority, and finally by the order of the
+     * service stream.  Ranking loads, without instantiating, every provider class the first time it is requested; the
+     * ranking is reused afterwards.  Providers not defined by their Source are left out.
+     * @return an unmodifiable list of the handles of the providers, from most to least preferred.
+     * @throws java.util.ServiceConfigurationError if a declared provider class could not be loaded or is not a subtype
+     *         of the service.
+     */
+    public List<ProviderHandle<T>> getRankedHandles() {
+        List<ProviderHandle<T>> current = ranked;
+        if (current == null) {
+            final List<Ranked<T>> entries = new ArrayList<>();
+            for (Map.Entry<UUID, IsolatedServiceLoader<T>> entry : loaderMap.entrySet()) {
+                final int sourcePriority = sourceMap.get(entry.getKey()).getPriority();
+                for (LazyProviderHandle<T> handle : entry.getValue().declared()) {
+                    if (handle.resolve() != null) {
+                        entries.add(new Ranked<>(handle, sourcePriority));
+                    }
+                }
+            }
+
+            // The sort is stable, so equally ranked providers keep the order of the service stream.
+            entries.sort(Comparator.<Ranked<T>>comparingInt(rank -> rank.sourcePriority)
+                    .thenComparingInt(rank -> rank.handle.getPriority())
+                    .reversed());
+            final List<ProviderHandle<T>> handles = new ArrayList<>(entries.size());
+            for (final Ranked<T> entry : entries) {
+                handles.add(entry.handle);
+            }
+            current = Collections.unmodifiableList(handles);
+            ranked = current;
+        }
+        return current;
+    }
+
+    /**
+     * Creates the snapshot that follows this one with an additional Source.
+     * @param source the Source to add.
+     * @param loader the IsolatedServiceLoader loading from the Source.
+     * @return a new snapshot containing the Source.
+     */
+    public ServiceSnapshot<T> withSource(final Source source, final IsolatedServiceLoader<T> loader) {
+        return withSources(Collections.singletonMap(source, loader));
+    }
+
+    /**
+     * Creates the snapshot that follows this one with several additional Sources.
+     * @param added the Sources to add, mapped to the IsolatedServiceLoaders loading from them, in the order they
+     *              should be added.
+     * @return a new snapshot containing the Sources.
+     */
+    public ServiceSnapshot<T> withSources(final Map<Source, IsolatedServiceLoader<T>> added) {
+        final Map<UUID, Source> sources = new LinkedHashMap<>(sourceMap);
+        final Map<UUID, IsolatedServiceLoader<T>> loaders = new LinkedHashMap<>(loaderMap);
+        for (Map.Entry<Source, IsolatedServiceLoader<T>> entry : added.entrySet()) {
+            sources.put(entry.getKey().getUUID(), entry.getKey());
+            loaders.put(entry.getKey().getUUID(), entry.getValue());
+        }
+        return new ServiceSnapshot<>(version + 1, sources, loaders);
+    }
+
+    /**
+     * Creates the snapshot that follows this one without the identified Source.
+     * @param uuid the UUID of the Source to remove.
+     * @return a new snapshot lacking the Source.
+     */
+    public ServiceSnapshot<T> withoutSource(final UUID uuid) {
+        final Map<UUID, Source> sources = new LinkedHashMap<>(sourceMap);
+        final Map<UUID, IsolatedServiceLoader<T>> loaders = new LinkedHashMap<>(loaderMap);
+        sources.remove(uuid);
+        loaders.remove(uuid);
+        return new ServiceSnapshot<>(version + 1, sources, loaders);
+    }
+
+    /**
+     * Creates the snapshot that follows this one without any Sources.
+     * @return a new, empty snapshot.
+     */
+    public ServiceSnapshot<T> withoutSources() {
+        return new ServiceSnapshot<>(version + 1, new LinkedHashMap<>(), new LinkedHashMap<>());
+    }
+
+    //endregion
+
+    //region Classes (Private)
+
+    /**
+     * A provider handle along with the priority of its Source, for ranking.
+     * @param <T> the SPI the provider implements.
+     */
+    private static final class Ranked<T> {
+
+        /**
+         * The handle of the provider.
+         */
+        private final LazyProviderHandle<T> handle;
+
+        /**
+         * The priority of the Source of the provider.
+         */
+        private final int sourcePriority;
+
+        /**
+         * Creates a new Ranked.
+         * @param handle the handle of the provider.
+         * @param sourcePriority the priority of the Source of the provider.
+         */
+        private Ranked(final LazyProviderHandle<T> handle, final int sourcePriority) {
+            this.handle = handle;
+            this.sourcePriority = sourcePriority;
+        }
+    }
+
+    //endregion
+}
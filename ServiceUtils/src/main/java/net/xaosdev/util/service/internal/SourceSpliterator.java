@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.internal;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A Spliterator over the elements produced by a list of IsolatedServiceLoaders.
+ *
+ * Splitting happens along source boundaries: each split takes half of the remaining sources, so that, once split far
+ * enough, every source is traversed (and its providers loaded and instantiated) by its own task.  Elements are
+ * encountered in source order, then in the order each source produces them.
+ * @param <T> the SPI loaded by the IsolatedServiceLoaders.
+ * @param <R> the type of element produced for each source.
+ */
+public final class SourceSpliterator<T, R> implements Spliterator<R> {
+
+    //region Fields (Private)
+
+    /**
+     * The loaders to traverse.
+     */
+    private final List<IsolatedServiceLoader<T>> loaders;
+
+    /**
+     * The function producing the elements of a single loader.
+     */
+    private final Function<IsolatedServiceLoader<T>, Iterator<R>> elements;
+
+    /**
+     * The index of the next loader to traverse.
+     */
+    private int index;
+
+    /**
+     * The index one past the last loader to traverse.
+     */
+    private final int fence;
+
+    /**
+     * The elements of the loader currently being traversed, or null if none has been started.
+     */
+    private Iterator<R> current = null;
+
+    //endregion
+
+    //region Constructors (Public)
+
+    /**
+     * Creates a new SourceSpliterator over all of the provided loaders.
+     * @param loaders the loaders to traverse, which must not be modified while this Spliterator is in use.
+     * @param elements the function producing the elements of a single loader.
+     */
+    public SourceSpliterator(final List<IsolatedServiceLoader<T>> loaders,
+                             final Function<IsolatedServiceLoader<T>, Iterator<R>> elements) {
+        this(loaders, elements, 0, loaders.size());
+    }
+
+    //endregion
+
+    //region Constructors (Private)
+
+    /**
+     * Creates a new SourceSpliterator over a range of the provided loaders.
+     * @param loaders the loaders to traverse.
+     * @param elements the function producing the elements of a single loader.
+     * @param index the index of the first loader to traverse.
+     * @param fence the index one past the last loader to traverse.
+     */
+    private SourceSpliterator(final List<IsolatedServiceLoader<T>> loaders,
+                              final Function<IsolatedServiceLoader<T>, Iterator<R>> elements,
+                              final int index, final int fence) {
+        this.loaders = loaders;
+        this.elements = elements;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    //endregion
+
+    //region Interface (Spliterator)
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public boolean tryAdvance(final Consumer<? super R> action) {
+        while (current == null || !current.hasNext()) {
+            if (index >= fence) {
+                return false;
+            }
+            current = elements.apply(loaders.get(index++));
+        }
+        action.accept(current.next());
+        return true;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void forEachRemaining(final Consumer<? super R> action) {
+        if (current != null) {
+            current.forEachRemaining(action);
+        }
+        while (index < fence) {
+            current = elements.apply(loaders.get(index++));
+            current.forEachRemaining(action);
+        }
+    }
+
+    /**
+     * Splits off the first half of the sources that have not been started yet.
+     * @return a Spliterator over the first half of the remaining sources, or null if fewer than two remain.
+     */
+    @Override
+    public Spliterator<R> trySplit() {
+        final int remaining = fence - index;
+        if (current != null || remaining < 2) {
+            return null;
+        }
+
+        final int middle = index + remaining / 2;
+        final Spliterator<R> prefix = new SourceSpliterator<>(loaders, elements, index, middle);
+        index = middle;
+        return prefix;
+    }
+
+    /**
+     * Estimates the number of elements remaining, assuming each source declares a single provider.
+     * @return the number of sources not yet started, plus one if a source is being traversed.
+     */
+    @Override
+    public long estimateSize() {
+        return (fence - index) + (current != null ? 1 : 0);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    //endregion
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.internal;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A map whose keys are compared by identity and only weakly referenced, optimized for frequent reads and rare writes.
+ *
+ * The entries are held in an immutable map that is replaced in its entirety by every write, so reads never lock and
+ * always observe either all or none of the entries of a write, including bulk writes.  Writes are serialized.  Once
+ * a key is no longer strongly reachable, its entry no longer prevents it from being collected and is dropped by the
+ * next write.
+ *
+ * Null keys are not supported: looking one up finds nothing, and storing one fails.
+ * @param <K> the type of the keys.
+ * @param <V> the type of the values.
+ */
+public final class WeakIdentityMap<K, V> {
+
+    //region Fields (Private)
+
+    /**
+     * The current entries, keyed by WeakKey.  Never modified once published.
+     */
+    private volatile Map<Object, V> entries = Collections.emptyMap();
+
+    /**
+     * The queue the keys of collected entries are enqueued on.
+     */
+    private final ReferenceQueue<K> collected = new ReferenceQueue<>();
+
+    //endregion
+
+    //region Interface (Public)
+
+    /**
+     * Gets the value associated with a key without locking.
+     * @param key the key to look up.
+     * @return the value associated with the key, or null if there is none.
+     */
+    public V get(final K key) {
+        return key == null ? null : entries.get(new Lookup(key));
+    }
+
+    /**
+     * Gets the value associated with a key without locking, or a fallback if there is none.
+     * @param key the key to look up.
+     * @param fallback the value to return if the key has no associated value.
+     * @return the value associated with the key, or the fallback.
+     */
+    public V getOrDefault(final K key, final V fallback) {
+        final V value = get(key);
+        return value != null ? value : fallback;
+    }
+
+    /**
+     * Gets the number of entries, including those whose keys were collected since the last write.
+     * @return the number of entries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Associates a value with a key, or removes the key if the value is null.
+     * @param key the key.
+     * @param value the value, or null to remove the key.
+     */
+    public void put(final K key, final V value) {
+        putAll(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * Removes a key.
+     * @param key the key to remove.
+     */
+    public void remove(final K key) {
+        put(key, null);
+    }
+
+    /**
+     * Gets the value associated with a key, associating a computed one first if there is none.
+     *
+     * Looking up a key that already has a value does not lock.  Otherwise, the value is computed and associated while
+     * holding the write lock, so that it is computed at most once.
+     * @param key the key to look up.
+     * @param function computes the value to associate with the key.
+     * @return the value associated with the key.
+     */
+    public V computeIfAbsent(final K key, final Function<? super K, ? extends V> function) {
+        V value = get(key);
+        if (value == null) {
+            synchronized (this) {
+                value = get(key);
+                if (value == null) {
+                    value = function.apply(key);
+                    put(key, value);
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Associates several values with their keys in a single write, removing the keys whose values are null.
+     * @param updates the values to associate, keyed by their keys.
+     */
+    public synchronized void putAll(final Map<? extends K, ? extends V> updates) {
+        final Map<Object, V> next = new HashMap<>(entries);
+        expunge(next);
+        for (Map.Entry<? extends K, ? extends V> update : updates.entrySet()) {
+            if (update.getKey() == null) {
+                throw new IllegalArgumentException("Key may not be null.");
+            }
+            if (update.getValue() == null) {
+                next.remove(new Lookup(update.getKey()));
+            } else {
+                next.remove(new Lookup(update.getKey()));
+                next.put(new WeakKey<>(update.getKey(), collected), update.getValue());
+            }
+        }
+        entries = Collections.unmodifiableMap(next);
+    }
+
+    //endregion
+
+    //region Interface (Private)
+
+    /**
+     * Removes the entries whose keys have been collected.
+     * @param next the entries being written.
+     */
+    private void expunge(final Map<Object, V> next) {
+        Reference<? extends K> reference;
+        while ((reference = collected.poll()) != null) {
+            next.remove(reference);
+        }
+    }
+
+    //endregion
+
+    //region Classes (Private)
+
+    /**
+     * A weakly referenced key, equal only to itself and to lookups of the same referent.
+     * @param <K> the type of the key.
+     */
+    private static final class WeakKey<K> extends WeakReference<K> {
+
+        /**
+         * The identity hash code of the referent, kept so that the key can still be found once it has been collected.
+         */
+        private final int hash;
+
+        /**
+         * Creates a new WeakKey.
+         * @param referent the key.
+         * @param queue the queue to enqueue the key on once collected.
+         */
+        private WeakKey(final K referent, final ReferenceQueue<K> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (o instanceof Lookup) {
+                return o.equals(this);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A short-lived, strongly referenced key used to find the entry of a referent.
+     */
+    private static final class Lookup {
+
+        /**
+         * The key being looked up.
+         */
+        private final Object referent;
+
+        /**
+         * Creates a new Lookup.
+         * @param referent the key being looked up.
+         */
+        private Lookup(final Object referent) {
+            this.referent = referent;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof WeakKey && ((WeakKey<?>) o).get() == referent;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(referent);
+        }
+    }
+
+    //endregion
+}
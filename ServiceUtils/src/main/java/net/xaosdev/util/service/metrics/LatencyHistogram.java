@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies, in nanoseconds, with power-of-two buckets.
+ *
+ * Recording a latency costs a couple of uncontended additions and never allocates, so a histogram may be updated on
+ * hot paths by many threads at once.  Percentiles are reported as the upper bound of the bucket they fall into, and so
+ * are accurate to within a factor of two; the count, total, mean and maximum are exact.  Reading a histogram while it
+ * is being updated yields values that may not be perfectly consistent with one another.
+ */
+public final class LatencyHistogram {
+
+    //region Fields (Private)
+
+    /**
+     * The number of buckets: bucket 0 holds zero, and bucket i holds latencies in [2^(i-1), 2^i).
+     */
+    private static final int BUCKETS = 64;
+
+    /**
+     * The number of latencies recorded in each bucket.
+     */
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+    /**
+     * The sum of every latency recorded.
+     */
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * The largest latency recorded.
+     */
+    private final LongAccumulator maximum = new LongAccumulator(Math::max, 0);
+
+    //endregion
+
+    //region Constructors (Public)
+
+    /**
+     * Creates a new, empty LatencyHistogram.
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    //endregion
+
+    //region Interface (Public)
+
+    /**
+     * Records a latency.
+     * @param nanos the latency, in nanoseconds; negative latencies are recorded as zero.
+     */
+    public void record(final long nanos) {
+        final long latency = Math.max(nanos, 0);
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(latency)].increment();
+        total.add(latency);
+        maximum.accumulate(latency);
+    }
+
+    /**
+     * Gets the number of latencies recorded.
+     * @return the number of latencies recorded.
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the sum of every latency recorded.
+     * @return the total latency, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return total.sum();
+    }
+
+    /**
+     * Gets the mean of the latencies recorded.
+     * @return the mean latency, in nanoseconds, or zero if none have been recorded.
+     */
+    public long getMeanNanos() {
+        final long count = getCount();
+        return count == 0 ? 0 : getTotalNanos() / count;
+    }
+
+    /**
+     * Gets the largest latency recorded.
+     * @return the maximum latency, in nanoseconds, or zero if none have been recorded.
+     */
+    public long getMaxNanos() {
+        return maximum.get();
+    }
+
+    /**
+     * Gets an upper bound of a percentile of the latencies recorded.
+     * @param percentile the percentile, between 0 and 100.
+     * @return the upper bound of the bucket containing the percentile, in nanoseconds, never exceeding the maximum, or
+     *         zero if no latency has been recorded.
+     */
+    public long getPercentileNanos(final double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+
+        final long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        int bucket = 0;
+        while (bucket < BUCKETS - 1 && (seen += counts[bucket]) < rank) {
+            bucket++;
+        }
+        final long upperBound = bucket == 0 ? 0 : (1L << bucket) - 1;
+        return Math.min(upperBound, getMaxNanos());
+    }
+
+    /**
+     * Summarizes this histogram.
+     * @return an unmodifiable map of the count, total, mean, 50th, 90th and 99th percentiles and maximum, in that
+     *         order, keyed by name.
+     */
+    public Map<String, Long> toMap() {
+        final Map<String, Long> summary = new LinkedHashMap<>();
+        summary.put("count", getCount());
+        summary.put("totalNanos", getTotalNanos());
+        summary.put("meanNanos", getMeanNanos());
+        summary.put("p50Nanos", getPercentileNanos(50));
+        summary.put("p90Nanos", getPercentileNanos(90));
+        summary.put("p99Nanos", getPercentileNanos(99));
+        summary.put("maxNanos", getMaxNanos());
+        return Collections.unmodifiableMap(summary);
+    }
+
+    //endregion
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of a Service, as registered by a ServiceMonitor.
+ *
+ * Every attribute is read live from the Service and its StandardServiceMetrics.  Latencies are summarized by the keys
+ * described in LatencyHistogram.toMap, and per-Source counts are keyed by the UUID of their Source.
+ */
+public interface ServiceMXBean {
+
+    /**
+     * Gets the name of the SPI of the Service.
+     * @return the fully qualified name of the SPI.
+     */
+    String getServiceClass();
+
+    /**
+     * Gets the Scope of the Service.
+     * @return the name of the Scope.
+     */
+    String getScope();
+
+    /**
+     * Gets the version of the current snapshot of sources.
+     * @return the version of the Service.
+     */
+    long getVersion();
+
+    /**
+     * Gets the number of sources currently part of the Service.
+     * @return the number of sources.
+     */
+    int getSourceCount();
+
+    /**
+     * Gets the number of sources added to the Service.
+     * @return the number of sources added.
+     */
+    long getSourcesAdded();
+
+    /**
+     * Gets the number of sources removed from the Service.
+     * @return the number of sources removed.
+     */
+    long getSourcesRemoved();
+
+    /**
+     * Gets the number of providers instantiated.
+     * @return the number of providers instantiated.
+     */
+    long getProvidersInstantiated();
+
+    /**
+     * Gets the number of providers that failed to instantiate.
+     * @return the number of instantiation failures.
+     */
+    long getInstantiationFailures();
+
+    /**
+     * Gets the number of streams requested from the Service.
+     * @return the number of streams requested.
+     */
+    long getStreamsRequested();
+
+    /**
+     * Summarizes the time taken by the constructors of providers.
+     * @return the summary of instantiation latencies, in nanoseconds.
+     */
+    Map<String, Long> getInstantiationLatency();
+
+    /**
+     * Summarizes the time taken by security checks.
+     * @return the summary of security check latencies, in nanoseconds.
+     */
+    Map<String, Long> getSecurityCheckLatency();
+
+    /**
+     * Gets the number of providers declared by each Source whose providers have been discovered.
+     * @return the number of declared providers, keyed by the UUID of their Source.
+     */
+    Map<String, Integer> getDeclaredProviders();
+
+    /**
+     * Gets the number of providers instantiated from each Source.
+     * @return the number of instantiated providers, keyed by the UUID of their Source.
+     */
+    Map<String, Long> getInstantiatedProviders();
+}
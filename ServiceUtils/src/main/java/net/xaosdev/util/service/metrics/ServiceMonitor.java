@@ -0,0 +1,299 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.metrics;
+
+import net.xaosdev.util.service.Service;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exposes a Service and its StandardServiceMetrics as a ServiceMXBean.
+ *
+ * The Service must have been created with a StandardServiceMetrics:
+ *
+ *     Service<MyService> service = new Service<>(MyService.class, Scope.SINGLETON, new StandardServiceMetrics());
+ *     ObjectName name = new ServiceMonitor(service).register();
+ *
+ * By default the monitor is registered with the platform MBeanServer under the domain of this library, with the SPI
+ * of the Service as its name.  A monitor follows the version of the Service through a ServiceListener and counts its
+ * sources through its metrics, so reading a monitor never calls the Service: JMX clients are never granted access to
+ * the Service itself, and polling a monitor does not show up in the security check latency it reports.
+ */
+public final class ServiceMonitor implements ServiceMXBean {
+
+    //region Fields (Private)
+
+    /**
+     * The domain of the default ObjectName of a monitor.
+     */
+    private static final String DOMAIN = "net.xaosdev.util.service";
+
+    /**
+     * The monitored Service.
+     */
+    private final Service<?> service;
+
+    /**
+     * The metrics of the monitored Service.
+     */
+    private final StandardServiceMetrics metrics;
+
+    /**
+     * The latest version of the monitored Service seen by this monitor.
+     */
+    private final AtomicLong version;
+
+    /**
+     * The MBeanServer this monitor is registered with, or null if it is not registered.
+     */
+    private MBeanServer server = null;
+
+    /**
+     * The name this monitor is registered under, or null if it is not registered.
+     */
+    private ObjectName name = null;
+
+    //endregion
+
+    //region Constructors (Public)
+
+    /**
+     * Creates a new ServiceMonitor.
+     * @param service the Service to monitor.
+     * @throws IllegalArgumentException if the Service was not created with a StandardServiceMetrics.
+     * @throws SecurityException if the caller may not access the Service.
+     */
+    public ServiceMonitor(final Service<?> service) {
+        if (service == null) {
+            throw new IllegalArgumentException("Service may not be null.");
+        }
+        if (!(service.getMetrics() instanceof StandardServiceMetrics)) {
+            throw new IllegalArgumentException("Service must be created with a StandardServiceMetrics.");
+        }
+
+        this.service = service;
+        this.metrics = (StandardServiceMetrics) service.getMetrics();
+        this.version = new AtomicLong(service.getVersion());
+        follow(service);
+    }
+
+    //endregion
+
+    //region Interface (ServiceMXBean)
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String getServiceClass() {
+        return service.getServiceClass().getName();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String getScope() {
+        return service.getScope().name();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int getSourceCount() {
+        return metrics.getSourceCount();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long getSourcesAdded() {
+        return metrics.getSourcesAdded();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long getSourcesRemoved() {
+        return metrics.getSourcesRemoved();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long getProvidersInstantiated() {
+        return metrics.getProvidersInstantiated();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long getInstantiationFailures() {
+        return metrics.getInstantiationFailures();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long getStreamsRequested() {
+        return metrics.getStreamsRequested();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Map<String, Long> getInstantiationLatency() {
+        return metrics.getInstantiationLatency().toMap();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Map<String, Long> getSecurityCheckLatency() {
+        return metrics.getSecurityCheckLatency().toMap();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Map<String, Integer> getDeclaredProviders() {
+        return byName(metrics.getDeclaredProviders());
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Map<String, Long> getInstantiatedProviders() {
+        return byName(metrics.getInstantiatedProviders());
+    }
+
+    //endregion
+
+    //region Interface (Public)
+
+    /**
+     * Registers this monitor with the platform MBeanServer under its default name.
+     * @return the name this monitor was registered under.
+     * @throws JMException if the monitor could not be registered.
+     * @throws IllegalStateException if the monitor is already registered.
+     */
+    public ObjectName register() throws JMException {
+        return register(ManagementFactory.getPlatformMBeanServer(), getDefaultName());
+    }
+
+    /**
+     * Registers this monitor with an MBeanServer.
+     * @param server the MBeanServer to register with.
+     * @param name the name to register under.
+     * @return the name this monitor was registered under.
+     * @throws JMException if the monitor could not be registered.
+     * @throws IllegalStateException if the monitor is already registered.
+     */
+    public synchronized ObjectName register(final MBeanServer server, final ObjectName name) throws JMException {
+        if (this.server != null) {
+            throw new IllegalStateException("ServiceMonitor is already registered as " + this.name + ".");
+        }
+
+        this.name = server.registerMBean(this, name).getObjectName();
+        this.server = server;
+        return this.name;
+    }
+
+    /**
+     * Unregisters this monitor, if it is registered.
+     * @throws JMException if the monitor could not be unregistered.
+     */
+    public synchronized void unregister() throws JMException {
+        if (server == null) {
+            return;
+        }
+
+        try {
+            server.unregisterMBean(name);
+        } finally {
+            server = null;
+            name = null;
+        }
+    }
+
+    /**
+     * Gets the name this monitor is registered under by default.
+     *
+     * The name includes the identity hash code of the Service, so that several Services with the same SPI can be
+     * monitored at once.
+     * @return the default ObjectName of this monitor.
+     * @throws MalformedObjectNameException if the name could not be built.
+     */
+    public ObjectName getDefaultName() throws MalformedObjectNameException {
+        return new ObjectName(DOMAIN + ":type=Service,name=" + ObjectName.quote(getServiceClass()) +
+                ",id=" + Integer.toHexString(System.identityHashCode(service)));
+    }
+
+    //endregion
+
+    //region Interface (Private)
+
+    /**
+     * Keeps the version seen by this monitor up to date with every change to a Service.
+     * @param followed the Service to follow.
+     * @param <T> the SPI of the Service.
+     */
+    private <T> void follow(final Service<T> followed) {
+        final AtomicLong latest = version;
+        followed.addListener(event -> latest.accumulateAndGet(event.getVersion(), Math::max));
+    }
+
+    /**
+     * Re-keys a map of per-Source values by the string form of the UUIDs, as required by JMX.
+     * @param values the values keyed by UUID.
+     * @param <V> the type of the values.
+     * @return the values keyed by the string form of the UUIDs.
+     */
+    private static <V> Map<String, V> byName(final Map<UUID, V> values) {
+        final Map<String, V> named = new HashMap<>();
+        values.forEach((uuid, value) -> named.put(uuid.toString(), value));
+        return named;
+    }
+
+    //endregion
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.metrics;
+
+import net.xaosdev.util.service.ServiceMetrics;
+import net.xaosdev.util.service.Source;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A ServiceMetrics keeping counters and latency histograms in memory.
+ *
+ * Every counter is a LongAdder, so reporting to this class scales with the number of threads using a Service.  Besides
+ * the totals, the number of providers declared by and instantiated from each Source is kept for as long as the Source
+ * remains part of the Service.  A ServiceMonitor exposes these metrics over JMX.
+ */
+public final class StandardServiceMetrics implements ServiceMetrics {
+
+    //region Fields (Private)
+
+    /**
+     * The number of sources added.
+     */
+    private final LongAdder sourcesAdded = new LongAdder();
+
+    /**
+     * The number of sources removed.
+     */
+    private final LongAdder sourcesRemoved = new LongAdder();
+
+    /**
+     * The number of providers instantiated.
+     */
+    private final LongAdder providersInstantiated = new LongAdder();
+
+    /**
+     * The number of providers that failed to instantiate.
+     */
+    private final LongAdder instantiationFailures = new LongAdder();
+
+    /**
+     * The number of streams requested.
+     */
+    private final LongAdder streamsRequested = new LongAdder();
+
+    /**
+     * The time taken by the constructors of providers.
+     */
+    private final LatencyHistogram instantiationLatency = new LatencyHistogram();
+
+    /**
+     * The time taken by security checks.
+     */
+    private final LatencyHistogram securityCheckLatency = new LatencyHistogram();
+
+    /**
+     * The counts of each Source currently part of the Service, keyed by the UUID of the Source.
+     */
+    private final ConcurrentMap<UUID, SourceCounts> sources = new ConcurrentHashMap<>();
+
+    //endregion
+
+    //region Interface (ServiceMetrics)
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void sourceAdded(final Source source) {
+        sourcesAdded.increment();
+        sources.putIfAbsent(source.getUUID(), new SourceCounts());
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void sourceRemoved(final Source source) {
+        sourcesRemoved.increment();
+        sources.remove(source.getUUID());
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void providersDiscovered(final Source source, final int providers) {
+        final SourceCounts counts = sources.get(source.getUUID());
+        if (counts != null) {
+            counts.declared = providers;
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void providerInstantiated(final UUID sourceUUID, final String provider, final long nanos) {
+        providersInstantiated.increment();
+        instantiationLatency.record(nanos);
+        final SourceCounts counts = sources.get(sourceUUID);
+        if (counts != null) {
+            counts.instantiated.increment();
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void instantiationFailed(final UUID sourceUUID, final String provider, final Throwable failure) {
+        instantiationFailures.increment();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void streamRequested() {
+        streamsRequested.increment();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void securityChecked(final long nanos) {
+        securityCheckLatency.record(nanos);
+    }
+
+    //endregion
+
+    //region Interface (Public)
+
+    /**
+     * Gets the number of sources added.
+     * @return the number of sources added.
+     */
+    public long getSourcesAdded() {
+        return sourcesAdded.sum();
+    }
+
+    /**
+     * Gets the number of sources removed.
+     * @return the number of sources removed.
+     */
+    public long getSourcesRemoved() {
+        return sourcesRemoved.sum();
+    }
+
+    /**
+     * Gets the number of sources that have been added and not removed since.
+     * @return the number of sources currently added.
+     */
+    public int getSourceCount() {
+        return sources.size();
+    }
+
+    /**
+     * Gets the number of providers instantiated.
+     * @return the number of providers instantiated.
+     */
+    public long getProvidersInstantiated() {
+        return providersInstantiated.sum();
+    }
+
+    /**
+     * Gets the number of providers that failed to instantiate.
+     * @return the number of instantiation failures.
+     */
+    public long getInstantiationFailures() {
+        return instantiationFailures.sum();
+    }
+
+    /**
+     * Gets the number of streams requested.
+     * @return the number of streams requested.
+     */
+    public long getStreamsRequested() {
+        return streamsRequested.sum();
+    }
+
+    /**
+     * Gets the time taken by the constructors of providers.
+     * @return the live histogram of instantiation latencies.
+     */
+    public LatencyHistogram getInstantiationLatency() {
+        return instantiationLatency;
+    }
+
+    /**
+     * Gets the time taken by security checks.
+     *
+     * Permissions are only checked, and so only timed, while a SecurityManager is installed.
+     * @return the live histogram of security check latencies.
+     */
+    public LatencyHistogram getSecurityCheckLatency() {
+        return securityCheckLatency;
+    }
+
+    /**
+     * Gets the number of providers declared by each Source whose providers have been discovered.
+     * @return an unmodifiable copy of the number of declared providers, keyed by the UUID of their Source.
+     */
+    public Map<UUID, Integer> getDeclaredProviders() {
+        final Map<UUID, Integer> declared = new HashMap<>();
+        sources.forEach((uuid, counts) -> {
+            final int providers = counts.declared;
+            if (providers >= 0) {
+                declared.put(uuid, providers);
+            }
+        });
+        return Collections.unmodifiableMap(declared);
+    }
+
+    /**
+     * Gets the number of providers instantiated from each Source.
+     * @return an unmodifiable copy of the number of instantiated providers, keyed by the UUID of their Source.
+     */
+    public Map<UUID, Long> getInstantiatedProviders() {
+        final Map<UUID, Long> instantiated = new HashMap<>();
+        sources.forEach((uuid, counts) -> instantiated.put(uuid, counts.instantiated.sum()));
+        return Collections.unmodifiableMap(instantiated);
+    }
+
+    //endregion
+
+    //region Classes (Private)
+
+    /**
+     * The counts kept for a single Source.
+     */
+    private static final class SourceCounts {
+
+        /**
+         * The number of providers declared by the Source, or -1 if they have not been discovered yet.
+         */
+        private volatile int declared = -1;
+
+        /**
+         * The number of providers instantiated from the Source.
+         */
+        private final LongAdder instantiated = new LongAdder();
+    }
+
+    //endregion
+}
@@ -0,0 +1,4 @@
+/**
+ * Contains the built-in ServiceMetrics implementation and its JMX instrumentation.
+ */
+package net.xaosdev.util.service.metrics;
\ No newline at end of file
@@ -16,10 +16,18 @@
 
 package net.xaosdev.util.service.security;
 
+import net.xaosdev.util.service.internal.PermissionCache;
+
 import java.security.Policy;
 
 /**
  * This class is used to facilitate the common security actions of securing a Java environment.
+ *
+ * Services remember the permission checks their callers have passed, but only while the installed Policy is a
+ * SourceFilteringPolicy; under any other Policy, every check consults the Policy, so refreshing it takes effect at once.
+ * These decisions are forgotten automatically when the SecurityManager or the Policy is replaced, and when a
+ * SourceFilteringPolicy changes through its setters or is refreshed.  A subclass of SourceFilteringPolicy granting
+ * permissions in any other way must call `invalidatePermissionCache` whenever those permissions change.
  */
 public final class Security {
 
@@ -56,9 +64,20 @@ public final class Security {
      */
     public static void installWithPolicy(Policy policy) {
         Policy.setPolicy(policy);
+        PermissionCache.invalidate();
         install();
     }
 
+    /**
+     * Forgets every permission check passed by callers of a Service, so that the next check consults the Policy.
+     *
+     * This is required whenever the permissions granted by the installed Policy change without it calling this
+     * method itself, such as when a subclass of SourceFilteringPolicy grants permissions based on its own state.
+     */
+    public static void invalidatePermissionCache() {
+        PermissionCache.invalidate();
+    }
+
     /**
      * A convenience method for acquiring the SourceFilteringPolicy from the System-wide policy location.
      *
@@ -17,6 +17,8 @@
 package net.xaosdev.util.service.security;
 
 import net.xaosdev.util.service.Source;
+import net.xaosdev.util.service.internal.PermissionCache;
+import net.xaosdev.util.service.internal.WeakIdentityMap;
 
 import java.security.AccessController;
 import java.security.AllPermission;
@@ -28,8 +30,9 @@ import java.security.PrivilegedAction;
 import java.security.ProtectionDomain;
 import java.security.SecurityPermission;
 import java.util.Enumeration;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A simple Policy that allows filtering ProtectionDomains based on Service sources.
@@ -43,20 +46,38 @@ import java.util.Map;
  * ClassLoaders.  The one exception to this rule is that the System Permissions are applied prior to locating any
  * any Sources matching the System ClassLoader.  This means that services loaded from the classpath will have the same
  * permissions as the application itself!
+ *
+ * This policy is safe for concurrent use.  Permissions are looked up without locking, and each change is published
+ * atomically.  ClassLoaders are only weakly referenced by the policy, so granting permissions to a Source does not
+ * prevent its ClassLoader, or the classes it loaded, from being collected once the Source is discarded.
+ *
+ * Decisions made by `implies` are remembered per ClassLoader, so code repeatedly performing the same secured operation
+ * only has its Permissions searched once.  Every remembered decision is forgotten whenever the Permissions of this
+ * policy change.
  */
 public class SourceFilteringPolicy extends Policy {
 
     //region Fields (Private)
 
+    /**
+     * The maximum number of decisions remembered per ClassLoader.
+     */
+    private static final int MAXIMUM_DECISIONS = 512;
+
     /**
      * The permissions granted by default to unknown sources.
      */
-    private Permissions defaultPermissions;
+    private volatile Permissions defaultPermissions;
 
     /**
      * The map used to correlate a source with granted permissions.
      */
-    private Map<ClassLoader, Permissions> permissionMap;
+    private final WeakIdentityMap<ClassLoader, Permissions> permissionMap = new WeakIdentityMap<>();
+
+    /**
+     * The decisions made by `implies` since the Permissions of this policy last changed.
+     */
+    private volatile Decisions decisions = new Decisions();
 
     //endregion
 
@@ -73,7 +94,6 @@ public class SourceFilteringPolicy extends Policy {
         defaultPermissions = new Permissions();
         defaultPermissions.setReadOnly();
 
-        permissionMap = new HashMap<>();
         permissionMap.put(ClassLoader.getSystemClassLoader(), systemPermissions);
     }
 
@@ -89,6 +109,40 @@ public class SourceFilteringPolicy extends Policy {
         return permissionMap.getOrDefault(domain.getClassLoader(), defaultPermissions);
     }
 
+    /**
+     * @inheritDoc
+     *
+     * The decision is remembered for the ClassLoader of the domain until the Permissions of this policy change.
+     * Subclasses whose `getPermissions` depends on more than the ClassLoader of a domain should override this method
+     * as well, and must call `Security.invalidatePermissionCache` whenever their decisions change.
+     */
+    @Override
+    public boolean implies(final ProtectionDomain domain, final Permission permission) {
+        final Map<Permission, Boolean> decided = decisions.forClassLoader(domain.getClassLoader());
+        final Boolean known = decided.get(permission);
+        if (known != null) {
+            return known;
+        }
+
+        final boolean implied = getPermissions(domain).implies(permission);
+        if (decided.size() >= MAXIMUM_DECISIONS) {
+            decided.clear();
+        }
+        decided.put(permission, implied);
+        return implied;
+    }
+
+    /**
+     * @inheritDoc
+     *
+     * Additionally forgets every decision made by `implies` and every permission check passed by callers of a
+     * Service.
+     */
+    @Override
+    public void refresh() {
+        invalidate();
+    }
+
     //endregion
 
     //region Interface (Public)
@@ -103,6 +157,7 @@ public class SourceFilteringPolicy extends Policy {
     public void setSystemPermissions(final Permissions permissions) {
         doPolicySetCheck();
         permissionMap.put(ClassLoader.getSystemClassLoader(), rectifyPermissions(permissions));
+        invalidate();
     }
 
     /**
@@ -124,6 +179,7 @@ public class SourceFilteringPolicy extends Policy {
     public void setDefaultPermissions(final Permissions permissions) {
         doPolicySetCheck();
         defaultPermissions = rectifyPermissions(permissions);
+        invalidate();
     }
 
     /**
@@ -149,6 +205,25 @@ public class SourceFilteringPolicy extends Policy {
         } else {
             permissionMap.put(source.getClassLoader(), rectifyPermissions(permissions));
         }
+        invalidate();
+    }
+
+    /**
+     * Sets the Permissions granted to several sources at once.
+     *
+     * All of the changes are published together, so a concurrent security check observes either none or all of them.
+     * This is considerably cheaper than setting the Permissions of a large number of sources one at a time.  Note that
+     * the sources are only used to identify ClassLoaders.
+     * @param permissions the Permissions to grant, keyed by the Source to grant them to, with null values revoking any
+     *                    Permissions explicitly granted to their Source.
+     */
+    public void setPermissions(final Map<? extends Source, Permissions> permissions) {
+        doPolicySetCheck();
+        final Map<ClassLoader, Permissions> updates = new LinkedHashMap<>();
+        permissions.forEach((source, granted) ->
+                updates.put(source.getClassLoader(), granted == null ? null : rectifyPermissions(granted)));
+        permissionMap.putAll(updates);
+        invalidate();
     }
 
     /**
@@ -166,6 +241,14 @@ public class SourceFilteringPolicy extends Policy {
 
     //region Interface (Private)
 
+    /**
+     * Forgets every decision made by `implies` and every permission check passed by callers of a Service.
+     */
+    private void invalidate() {
+        decisions = new Decisions();
+        PermissionCache.invalidate();
+    }
+
     /**
      * Used to make sure Permissions aren't null and creates a copy of incoming Permissions object.
      * @param permissions the permissions to check.
@@ -208,4 +291,36 @@ public class SourceFilteringPolicy extends Policy {
     }
 
     //endregion
+
+    //region Classes (Private)
+
+    /**
+     * The decisions made by `implies`, keyed by ClassLoader and then by Permission.
+     */
+    private static final class Decisions {
+
+        /**
+         * The decisions made for each ClassLoader.
+         */
+        private final WeakIdentityMap<ClassLoader, Map<Permission, Boolean>> byClassLoader = new WeakIdentityMap<>();
+
+        /**
+         * The decisions made for domains without a ClassLoader.
+         */
+        private final Map<Permission, Boolean> bootstrap = new ConcurrentHashMap<>();
+
+        /**
+         * Gets the decisions made for a ClassLoader.
+         * @param classLoader the ClassLoader, or null for domains without one.
+         * @return the decisions made for the ClassLoader.
+         */
+        private Map<Permission, Boolean> forClassLoader(final ClassLoader classLoader) {
+            if (classLoader == null) {
+                return bootstrap;
+            }
+            return byClassLoader.computeIfAbsent(classLoader, key -> new ConcurrentHashMap<>());
+        }
+    }
+
+    //endregion
 }
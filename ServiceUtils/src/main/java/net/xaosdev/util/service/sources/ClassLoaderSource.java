@@ -37,6 +37,11 @@ public class ClassLoaderSource implements Source {
      */
     private final ClassLoader classLoader;
 
+    /**
+     * The priority of the providers found within this source.
+     */
+    private final int priority;
+
     //endregion
 
     //region Constructors (Public)
@@ -53,8 +58,18 @@ public class ClassLoaderSource implements Source {
      * @param classLoader the user-provided ClassLoader.
      */
     public ClassLoaderSource(final ClassLoader classLoader) {
+        this(classLoader, 0);
+    }
+
+    /**
+     * Creates a new ClassLoader source from a user-provided ClassLoader with the given priority.
+     * @param classLoader the user-provided ClassLoader.
+     * @param priority the priority of the providers found within this source relative to those of other sources.
+     */
+    public ClassLoaderSource(final ClassLoader classLoader, final int priority) {
         uuid = UUID.randomUUID();
         this.classLoader = classLoader;
+        this.priority = priority;
     }
 
     //endregion
@@ -75,6 +90,14 @@ public class ClassLoaderSource implements Source {
         return classLoader;
     }
 
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int getPriority() {
+        return priority;
+    }
+
     //endregion
 
     //region Interface (Object)
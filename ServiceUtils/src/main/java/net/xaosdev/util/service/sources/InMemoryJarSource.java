@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.sources;
+
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.zip.ZipException;
+
+/**
+ * A source representing a Jar file held in memory.
+ *
+ * The classes and provider-configuration files of the jar are served from an index built once, when the source is
+ * created, so plugins fetched from a cache or over the network can be loaded without first being written to a
+ * temporary file.  Stored entries are defined without being copied and deflated entries are inflated once, straight
+ * into the buffer handed to the JVM.  The ClassLoader of this source is parallel capable.
+ *
+ * The package versioning and sealing attributes of the manifest are honoured, but signatures are not verified:
+ * signed jars are rejected.  Multi-release entries are not interpreted.
+ *
+ * The bytes of the jar are NOT copied: they must not be modified for as long as this source is in use.  Closing this
+ * source releases them; classes already loaded from the source remain usable.
+ */
+public final class InMemoryJarSource extends ClassLoaderSource {
+
+    //region Constructors (Public)
+
+    /**
+     * Creates a new InMemoryJarSource from the bytes of a Jar file.
+     *
+     * The created ClassLoader uses the system ClassLoader as its parent.
+     * @param jar the bytes of the Jar file.
+     * @throws ZipException if the bytes are not a valid Jar file or use a feature that is not supported, such as Zip64
+     *                      or signatures.
+     */
+    public InMemoryJarSource(final byte[] jar) throws ZipException {
+        this(ByteBuffer.wrap(jar));
+    }
+
+    /**
+     * Creates a new InMemoryJarSource from the bytes of a Jar file and a parent ClassLoader.
+     *
+     * @param jar the bytes of the Jar file.
+     * @param classLoader the ClassLoader to treat as the parent loader.
+     * @throws ZipException if the bytes are not a valid Jar file or use a feature that is not supported, such as Zip64
+     *                      or signatures.
+     */
+    public InMemoryJarSource(final byte[] jar, final ClassLoader classLoader) throws ZipException {
+        this(ByteBuffer.wrap(jar), classLoader);
+    }
+
+    /**
+     * Creates a new InMemoryJarSource from a buffer holding a Jar file.
+     *
+     * The created ClassLoader uses the system ClassLoader as its parent.
+     * @param jar the Jar file, from the buffer's position to its limit.  The buffer's position is not changed.
+     * @throws ZipException if the bytes are not a valid Jar file or use a feature that is not supported, such as Zip64
+     *                      or signatures.
+     */
+    public InMemoryJarSource(final ByteBuffer jar) throws ZipException {
+        this(jar, ClassLoader.getSystemClassLoader());
+    }
+
+    /**
+     * Creates a new InMemoryJarSource from a buffer holding a Jar file and a parent ClassLoader.
+     *
+     * @param jar the Jar file, from the buffer's position to its limit.  The buffer's position is not changed.
+     * @param classLoader the ClassLoader to treat as the parent loader.
+     * @throws ZipException if the bytes are not a valid Jar file or use a feature that is not supported, such as Zip64
+     *                      or signatures.
+     */
+    public InMemoryJarSource(final ByteBuffer jar, final ClassLoader classLoader) throws ZipException {
+        this(jar, classLoader, 0);
+    }
+
+    /**
+     * Creates a new InMemoryJarSource from a buffer holding a Jar file and a parent ClassLoader with the given
+     * priority.
+     *
+     * @param jar the Jar file, from the buffer's position to its limit.  The buffer's position is not changed.
+     * @param classLoader the ClassLoader to treat as the parent loader.
+     * @param priority the priority of the providers found within this source relative to those of other sources.
+     * @throws ZipException if the bytes are not a valid Jar file or use a feature that is not supported, such as Zip64
+     *                      or signatures.
+     */
+    public InMemoryJarSource(final ByteBuffer jar, final ClassLoader classLoader, final int priority)
+            throws ZipException {
+        super(new JarBufferClassLoader(jar, null, classLoader), priority);
+    }
+
+    //endregion
+
+    //region Interface (Source)
+
+    /**
+     * Checks whether a location lies within the Jar file of this source.
+     * @param location the URL of a resource or the CodeSource location of a class.
+     * @return true if the location lies within the Jar file.
+     */
+    @Override
+    public boolean contains(final URL location) {
+        return ((JarBufferClassLoader) getClassLoader()).contains(location);
+    }
+
+    /**
+     * Releases the bytes of the Jar file.
+     */
+    @Override
+    public void close() {
+        ((JarBufferClassLoader) getClassLoader()).close();
+    }
+
+    //endregion
+}
@@ -0,0 +1,482 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.sources;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.security.AccessController;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.security.PrivilegedAction;
+import java.security.SecureClassLoader;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A ClassLoader that loads classes and resources from a Jar file held in a ByteBuffer.
+ *
+ * The central directory of the archive is read once, when the loader is created, into an index of its entries.  A
+ * class is then defined straight from the buffer: stored entries are passed to the JVM as a slice of the archive
+ * without being copied, and deflated entries are inflated into a single array of exactly the right size.  No file is
+ * ever opened, so the archive may come from memory, a cache, or a memory-mapped file.
+ *
+ * Resources are served through URLs of the "jarbuffer" scheme, which are only understood by the loader that created
+ * them.  The package versioning and sealing attributes of the manifest are applied to the packages this loader
+ * defines.  Signatures are NOT verified, so signed jars are rejected rather than loaded without their signers; multi-
+ * release entries are not interpreted.
+ *
+ * This loader is registered as parallel capable, so classes are locked by name rather than by loader while they are
+ * defined.  Closing the loader releases the archive; classes that have already been defined remain usable, but no
+ * further classes or resources can be loaded.
+ */
+final class JarBufferClassLoader extends SecureClassLoader implements Closeable {
+
+    //region Fields (Private)
+
+    /**
+     * The scheme of the URLs of resources within an archive.
+     */
+    private static final String SCHEME = "jarbuffer";
+
+    /**
+     * The separator between the location of an archive and the name of a resource.
+     */
+    private static final String SEPARATOR = "!/";
+
+    /**
+     * The suffix of the names of class file entries.
+     */
+    private static final String CLASS_SUFFIX = ".class";
+
+    /**
+     * The name of the manifest entry.
+     */
+    private static final String MANIFEST_NAME = "META-INF/MANIFEST.MF";
+
+    /**
+     * The largest number of compressed bytes copied out of a direct buffer at once.
+     */
+    private static final int INFLATE_CHUNK_SIZE = 8192;
+
+    /**
+     * The archive, with its position at zero, or null once the loader has been closed.
+     */
+    private volatile ByteBuffer archive;
+
+    /**
+     * The entries of the archive, keyed by name.
+     */
+    private final Map<String, ZipCentralDirectory.Entry> entries;
+
+    /**
+     * The location of the archive, which every resource URL of this loader starts with.
+     */
+    private final URL location;
+
+    /**
+     * The CodeSource of every class defined by this loader.
+     */
+    private final CodeSource codeSource;
+
+    /**
+     * The manifest of the archive, or null if it has none.
+     */
+    private final Manifest manifest;
+
+    //endregion
+
+    //region Initializers (Static)
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    //endregion
+
+    //region Constructors (Package-Private)
+
+    /**
+     * Creates a new JarBufferClassLoader.
+     *
+     * The archive is NOT copied: its remaining bytes must not be modified for as long as the loader is in use.
+     * @param archive the Jar file, from its position to its limit.
+     * @param codeBase the CodeSource location of the classes defined by this loader, or null to use the location of
+     *                 the archive.
+     * @param parent the parent ClassLoader to form a hierarchy with.
+     * @throws ZipException if the archive is malformed or uses a feature that is not supported, such as signatures.
+     */
+    JarBufferClassLoader(final ByteBuffer archive, final URL codeBase, final ClassLoader parent)
+            throws ZipException {
+        super(parent);
+        this.archive = archive.slice();
+        this.entries = ZipCentralDirectory.read(this.archive);
+        for (String name : entries.keySet()) {
+            if (isSignatureFile(name)) {
+                throw new ZipCentralDirectory.UnsupportedZipException("Signed jars are not supported: " + name);
+            }
+        }
+        this.manifest = readManifest();
+
+        final Handler handler = new Handler();
+        this.location = AccessController.doPrivileged((PrivilegedAction<URL>) () -> {
+            try {
+                return new URL(SCHEME, null, -1, UUID.randomUUID() + SEPARATOR, handler);
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        this.codeSource = new CodeSource(codeBase == null ? location : codeBase, (CodeSigner[]) null);
+    }
+
+    //endregion
+
+    //region Interface (Package-Private)
+
+    /**
+     * Gets the location of the archive.
+     * @return the URL every resource URL of this loader starts with.
+     */
+    URL getLocation() {
+        return location;
+    }
+
+    /**
+     * Checks whether a location lies within the archive of this loader.
+     * @param url the URL of a resource or the CodeSource location of a class.
+     * @return true if the location lies within the archive.
+     */
+    boolean contains(final URL url) {
+        final String form = url.toExternalForm();
+        return form.startsWith(location.toExternalForm()) || form.equals(codeSource.getLocation().toExternalForm());
+    }
+
+    //endregion
+
+    //region Interface (ClassLoader)
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    protected Class<?> findClass(final String name) throws ClassNotFoundException {
+        final ZipCentralDirectory.Entry entry = entries.get(name.replace('.', '/') + CLASS_SUFFIX);
+        if (entry == null) {
+            throw new ClassNotFoundException(name);
+        }
+
+        final ByteBuffer bytes;
+        try {
+            bytes = read(entry);
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+        definePackageOf(name);
+        return defineClass(name, bytes, codeSource);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    protected URL findResource(final String name) {
+        if (archive == null || !entries.containsKey(name)) {
+            return null;
+        }
+        try {
+            return new URL(location, name);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    protected Enumeration<URL> findResources(final String name) {
+        final URL url = findResource(name);
+        return url == null ? Collections.emptyEnumeration() : Collections.enumeration(Collections.singletonList(url));
+    }
+
+    //endregion
+
+    //region Interface (Closeable)
+
+    /**
+     * Releases the archive.
+     *
+     * Classes already defined by this loader remain usable.
+     */
+    @Override
+    public void close() {
+        archive = null;
+    }
+
+    //endregion
+
+    //region Interface (Private)
+
+    /**
+     * Defines the package of a class if it has not been defined yet.
+     * @param className the name of the class.
+     */
+    @SuppressWarnings("deprecation")
+    private void definePackageOf(final String className) {
+        final int separator = className.lastIndexOf('.');
+        if (separator < 0) {
+            return;
+        }
+
+        final String name = className.substring(0, separator);
+        if (getPackage(name) == null) {
+            try {
+                if (manifest == null) {
+                    definePackage(name, null, null, null, null, null, null, null);
+                } else {
+                    final Attributes specific = manifest.getAttributes(name.replace('.', '/') + '/');
+                    final Attributes main = manifest.getMainAttributes();
+                    final boolean sealed = "true".equalsIgnoreCase(attribute(Attributes.Name.SEALED, specific, main));
+                    definePackage(name,
+                            attribute(Attributes.Name.SPECIFICATION_TITLE, specific, main),
+                            attribute(Attributes.Name.SPECIFICATION_VERSION, specific, main),
+                            attribute(Attributes.Name.SPECIFICATION_VENDOR, specific, main),
+                            attribute(Attributes.Name.IMPLEMENTATION_TITLE, specific, main),
+                            attribute(Attributes.Name.IMPLEMENTATION_VERSION, specific, main),
+                            attribute(Attributes.Name.IMPLEMENTATION_VENDOR, specific, main),
+                            sealed ? codeSource.getLocation() : null);
+                }
+            } catch (IllegalArgumentException e) {
+                // Defined concurrently by another thread.
+            }
+        }
+    }
+
+    /**
+     * Gets an attribute of a package, falling back to the main attributes of the manifest.
+     * @param name the name of the attribute.
+     * @param specific the attributes of the package, or null if it has none.
+     * @param main the main attributes of the manifest.
+     * @return the value of the attribute, or null if it is not set.
+     */
+    private static String attribute(final Attributes.Name name, final Attributes specific, final Attributes main) {
+        final String value = specific == null ? null : specific.getValue(name);
+        return value != null ? value : main.getValue(name);
+    }
+
+    /**
+     * Checks whether an entry holds a signature, following the naming rules of java.util.jar.JarFile.
+     * @param name the name of the entry.
+     * @return true if the entry is a signature file or signature block.
+     */
+    private static boolean isSignatureFile(final String name) {
+        final String upper = name.toUpperCase(Locale.ROOT);
+        if (!upper.startsWith("META-INF/") || upper.indexOf('/', "META-INF/".length()) >= 0) {
+            return false;
+        }
+        return upper.endsWith(".SF") || upper.endsWith(".RSA") || upper.endsWith(".DSA") || upper.endsWith(".EC") ||
+                upper.startsWith("META-INF/SIG-");
+    }
+
+    /**
+     * Reads the manifest of the archive.
+     * @return the manifest, or null if the archive has none.
+     * @throws ZipException if the manifest could not be read.
+     */
+    private Manifest readManifest() throws ZipException {
+        final ZipCentralDirectory.Entry entry = entries.get(MANIFEST_NAME);
+        if (entry == null) {
+            return null;
+        }
+
+        try {
+            final ByteBuffer data = read(entry);
+            final byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            return new Manifest(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            final ZipException failure = new ZipException("Manifest could not be read.");
+            failure.initCause(e);
+            throw failure;
+        }
+    }
+
+    /**
+     * Reads the uncompressed data of an entry.
+     * @param entry the entry to read.
+     * @return a buffer holding exactly the data of the entry.
+     * @throws IOException if the loader has been closed, or the entry could not be read.
+     */
+    private ByteBuffer read(final ZipCentralDirectory.Entry entry) throws IOException {
+        final ByteBuffer buffer = archive;
+        if (buffer == null) {
+            throw new IOException("JarBufferClassLoader has been closed.");
+        }
+
+        final int offset = ZipCentralDirectory.getDataOffset(buffer, entry);
+        final ByteBuffer data = buffer.duplicate();
+        data.position(offset);
+        data.limit(offset + (int) entry.compressedSize);
+
+        switch (entry.method) {
+            case 0:
+                return data.slice();
+            case 8:
+                return ByteBuffer.wrap(inflate(data, entry));
+            default:
+                throw new ZipException("Unsupported compression method " + entry.method + ": " + entry.name);
+        }
+    }
+
+    /**
+     * Inflates the data of a deflated entry.
+     * @param data the compressed data, from its position to its limit.
+     * @param entry the entry the data belongs to.
+     * @return the uncompressed data.
+     * @throws ZipException if the data is malformed or does not match the size recorded in the central directory.
+     */
+    private static byte[] inflate(final ByteBuffer data, final ZipCentralDirectory.Entry entry) throws ZipException {
+        final ByteBuffer remaining = data.duplicate();
+        final byte[] chunk = data.hasArray() ? null : new byte[Math.min(remaining.remaining(), INFLATE_CHUNK_SIZE)];
+        final byte[] output = new byte[(int) entry.size];
+        final Inflater inflater = new Inflater(true);
+        try {
+            int length = 0;
+            while (length < output.length) {
+                if (inflater.needsInput() && remaining.hasRemaining()) {
+                    if (chunk == null) {
+                        // Heap buffers are inflated in place.
+                        inflater.setInput(remaining.array(), remaining.arrayOffset() + remaining.position(),
+                                remaining.remaining());
+                        remaining.position(remaining.limit());
+                    } else {
+                        // Direct and mapped buffers are copied a chunk at a time rather than all at once.
+                        final int size = Math.min(remaining.remaining(), chunk.length);
+                        remaining.get(chunk, 0, size);
+                        inflater.setInput(chunk, 0, size);
+                    }
+                }
+
+                final int inflated = inflater.inflate(output, length, output.length - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsDictionary() ||
+                        (inflater.needsInput() && !remaining.hasRemaining()))) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != output.length) {
+                throw new ZipException("Invalid entry size: " + entry.name);
+            }
+            return output;
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid deflated data: " + entry.name);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    //endregion
+
+    //region Classes (Private)
+
+    /**
+     * Opens the resource URLs of this loader.
+     */
+    private final class Handler extends URLStreamHandler {
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        protected URLConnection openConnection(final URL url) throws IOException {
+            final String form = url.toExternalForm();
+            final String root = location.toExternalForm();
+            final ZipCentralDirectory.Entry entry = form.startsWith(root) ?
+                    entries.get(form.substring(root.length())) : null;
+            if (entry == null) {
+                throw new FileNotFoundException(form);
+            }
+            return new Connection(url, entry);
+        }
+    }
+
+    /**
+     * A connection to a single resource of this loader.
+     */
+    private final class Connection extends URLConnection {
+
+        /**
+         * The entry holding the resource.
+         */
+        private final ZipCentralDirectory.Entry entry;
+
+        /**
+         * Creates a new Connection.
+         * @param url the URL of the resource.
+         * @param entry the entry holding the resource.
+         */
+        private Connection(final URL url, final ZipCentralDirectory.Entry entry) {
+            super(url);
+            this.entry = entry;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public void connect() {
+            connected = true;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public InputStream getInputStream() throws IOException {
+            connect();
+            final ByteBuffer data = read(entry);
+            final byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            return new ByteArrayInputStream(bytes);
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public long getContentLengthLong() {
+            return entry.size;
+        }
+    }
+
+    //endregion
+}
@@ -17,19 +17,30 @@
 package net.xaosdev.util.service.sources;
 
 import net.xaosdev.util.service.Source;
+import net.xaosdev.util.service.internal.FlightRecorderEvents;
+import net.xaosdev.util.service.security.ServiceUtilityPermission;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.AccessController;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 /**
  * This class contains utility methods for creating service sources that come from Jar files stored locally on the
@@ -38,11 +49,80 @@ import java.util.zip.ZipFile;
  * This class is not, actually, a source itself.  Instead, it returns sources that it identifies from parameters
  * passed in.  It will perform certain validity checks to attempt to ensure that the input file or directory only
  * returns sources that point to valid jar files.  Please see the static interface for more information.
+ *
+ * How thoroughly files are validated is governed by a JarValidationStrategy, which may be replaced to trade
+ * thoroughness for speed.  Validation results may be persisted across restarts by installing a JarValidationCache,
+ * in which case jars that have not changed since they were last validated are not opened at all.  To keep a Service
+ * in sync with a directory as jars come and go, see PluginDirectoryWatcher.  To load a large number of small jars
+ * through a single ClassLoader, see `tryCreateSharedSourcesFromFilesInDirectory`.
  */
 public final class JarFileSourceCreator {
 
+    //region Fields (Private)
+
+    /**
+     * The cache of validation results, or null if validation results are not cached.
+     */
+    private static volatile JarValidationCache validationCache = null;
+
+    /**
+     * The strategy used to validate files.
+     */
+    private static volatile JarValidationStrategy validationStrategy =
+            StandardJarValidationStrategy.CENTRAL_DIRECTORY;
+
+    //endregion
+
     //region Interface (Public)
 
+    /**
+     * Sets the strategy used to validate files.
+     *
+     * By default, StandardJarValidationStrategy.CENTRAL_DIRECTORY is used.  Note that results recorded in a
+     * JarValidationCache by a previous strategy are reused regardless of the strategy in use.
+     * @param strategy the JarValidationStrategy to use.
+     */
+    public static void setValidationStrategy(final JarValidationStrategy strategy) {
+        if (System.getSecurityManager() != null) {
+            AccessController.checkPermission(new ServiceUtilityPermission(ServiceUtilityPermission.Type.UPDATE));
+        }
+
+        if (strategy == null) {
+            throw new IllegalArgumentException("JarValidationStrategy may not be null.");
+        }
+        validationStrategy = strategy;
+    }
+
+    /**
+     * Gets the strategy used to validate files.
+     * @return the JarValidationStrategy in use.
+     */
+    public static JarValidationStrategy getValidationStrategy() {
+        return validationStrategy;
+    }
+
+    /**
+     * Sets the cache used to record and reuse validation results.
+     *
+     * Note that the cache is not saved automatically; call `save` on it once a scan is complete.
+     * @param cache the JarValidationCache to use, or null to always validate files.
+     */
+    public static void setValidationCache(final JarValidationCache cache) {
+        if (System.getSecurityManager() != null) {
+            AccessController.checkPermission(new ServiceUtilityPermission(ServiceUtilityPermission.Type.UPDATE));
+        }
+
+        validationCache = cache;
+    }
+
+    /**
+     * Gets the cache used to record and reuse validation results.
+     * @return the JarValidationCache in use, or null if validation results are not cached.
+     */
+    public static JarValidationCache getValidationCache() {
+        return validationCache;
+    }
+
     /**
      * Attempts to create a source file for a single file.
      *
@@ -68,8 +148,22 @@ public final class JarFileSourceCreator {
      * @return a Source file accessing the validated jar file or null if the file failed to validate.
      */
     public static Source tryCreateSourceFromFile(final File jar, final ClassLoader classLoader) {
+        return tryCreateSourceFromFile(jar, classLoader, 0);
+    }
+
+    /**
+     * Attempts to create a source file for a single file.
+     *
+     * This method will fail if the input file fails validation checks.  Additionally, the new source will use the
+     * provided ClassLoader as its parent loader and rank its providers with the given priority.
+     * @param jar the File to attempt to validate and convert to plugin source.
+     * @param classLoader the parent ClassLoader to form a hierarchy with.
+     * @param priority the priority of the providers found within the source relative to those of other sources.
+     * @return a Source file accessing the validated jar file or null if the file failed to validate.
+     */
+    public static Source tryCreateSourceFromFile(final File jar, final ClassLoader classLoader, final int priority) {
         try {
-            return validate(jar) ? new URLSource(jar.toURI().toURL(), classLoader) : null;
+            return validate(jar) ? new URLSource(jar.toURI().toURL(), classLoader, priority) : null;
         } catch (MalformedURLException e) {
             return null;
         }
@@ -131,14 +225,178 @@ public final class JarFileSourceCreator {
      */
     public static List<Source> tryCreateSourceFromFilesInDirectory(final File dir, final boolean recurseChildren,
                                                                    final ClassLoader classLoader) {
+        return tryCreateSourceFromFilesInDirectory(dir, recurseChildren, classLoader, 0);
+    }
+
+    /**
+     * Attemps to filter a directory for all files contained within that may be Jar files.
+     *
+     * May recurse the children directories if indicated to do so.  Every new source ranks its providers with the
+     * given priority.
+     * @param dir the directory to inspect.
+     * @param recurseChildren if true, recurse child directories for Jar files.
+     * @param classLoader the parent ClassLoader to form a hierarchy with.
+     * @param priority the priority of the providers found within the sources relative to those of other sources.
+     * @return a list of validated Source objects which will be empty if none validated and null if an error occurred
+     *         or if the input file is not a directory.
+     */
+    public static List<Source> tryCreateSourceFromFilesInDirectory(final File dir, final boolean recurseChildren,
+                                                                   final ClassLoader classLoader,
+                                                                   final int priority) {
         final List<File> files = acquireFiles(dir, recurseChildren);
         if (files == null)
             return null;
 
         return files.stream()
-                .map(file -> tryCreateSourceFromFile(file, classLoader))
-                .filter(Objects::isNull)
+                .map(file -> tryCreateSourceFromFile(file, classLoader, priority))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Attempts to filter a directory for all files contained within that may be Jar files, loading all of them through
+     * a single, shared ClassLoader.
+     *
+     * May recurse the children directories if indicated to do so.  One source is still created per Jar file, so each
+     * jar's providers remain attributed to, and can be removed with, its own source; see SharedJarSource for the
+     * consequences of sharing a ClassLoader.
+     * @param dir the directory to inspect.
+     * @param recurseChildren if true, recurse child directories for Jar files.
+     * @return a list of validated Source objects which will be empty if none validated and null if an error occurred
+     *         or if the input file is not a directory.
+     */
+    public static List<Source> tryCreateSharedSourcesFromFilesInDirectory(final File dir,
+                                                                          final boolean recurseChildren) {
+        return tryCreateSharedSourcesFromFilesInDirectory(dir, recurseChildren, null);
+    }
+
+    /**
+     * Attempts to filter a directory for all files contained within that may be Jar files, loading all of them through
+     * a single, shared ClassLoader.
+     *
+     * May recurse the children directories if indicated to do so.  One source is still created per Jar file, so each
+     * jar's providers remain attributed to, and can be removed with, its own source; see SharedJarSource for the
+     * consequences of sharing a ClassLoader.  Additionally, the shared ClassLoader will use the provided ClassLoader
+     * as its parent loader.
+     * @param dir the directory to inspect.
+     * @param recurseChildren if true, recurse child directories for Jar files.
+     * @param classLoader the parent ClassLoader to form a hierarchy with, or null to use the default parent.
+     * @return a list of validated Source objects which will be empty if none validated and null if an error occurred
+     *         or if the input file is not a directory.
+     */
+    public static List<Source> tryCreateSharedSourcesFromFilesInDirectory(final File dir,
+                                                                          final boolean recurseChildren,
+                                                                          final ClassLoader classLoader) {
+        return tryCreateSharedSourcesFromFilesInDirectory(dir, recurseChildren, classLoader, 0);
+    }
+
+    /**
+     * Attempts to filter a directory for all files contained within that may be Jar files, loading all of them through
+     * a single, shared ClassLoader.
+     *
+     * May recurse the children directories if indicated to do so.  One source is still created per Jar file, so each
+     * jar's providers remain attributed to, and can be removed with, its own source; see SharedJarSource for the
+     * consequences of sharing a ClassLoader.  Every new source ranks its providers with the given priority.
+     * @param dir the directory to inspect.
+     * @param recurseChildren if true, recurse child directories for Jar files.
+     * @param classLoader the parent ClassLoader to form a hierarchy with, or null to use the default parent.
+     * @param priority the priority of the providers found within the sources relative to those of other sources.
+     * @return a list of validated Source objects which will be empty if none validated and null if an error occurred
+     *         or if the input file is not a directory.
+     */
+    public static List<Source> tryCreateSharedSourcesFromFilesInDirectory(final File dir,
+                                                                          final boolean recurseChildren,
+                                                                          final ClassLoader classLoader,
+                                                                          final int priority) {
+        final List<File> files = acquireFiles(dir, recurseChildren);
+        if (files == null)
+            return null;
+
+        final List<File> jars = files.stream()
+                .filter(JarFileSourceCreator::validate)
                 .collect(Collectors.toList());
+        try {
+            return new ArrayList<>(SharedJarSource.createGroup(jars, classLoader, priority));
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Attempts to filter a directory for all files contained within that may be Jar files, validating them in
+     * parallel.
+     *
+     * May recurse the children directories if indicated to do so.  The directory is walked lazily and at most
+     * `maxConcurrentIo` files are validated at any one time, regardless of the size of the Executor, so that a scan
+     * cannot saturate the underlying storage.  Each Source is handed to the provided Consumer as soon as it has been
+     * created, on whichever thread created it.
+     * @param dir the directory to inspect.
+     * @param recurseChildren if true, recurse child directories for Jar files.
+     * @param executor the Executor to validate files with.
+     * @param maxConcurrentIo the maximum number of files validated at any one time.
+     * @param onSource a Consumer receiving each Source as soon as it is created, or null if none is required.
+     * @return a CompletableFuture completing with a list of the validated Source objects, in the order they were
+     *         created, with null if the input file is not a directory, or exceptionally if the directory could not be
+     *         walked or the Executor rejected a worker.
+     */
+    public static CompletableFuture<List<Source>> tryCreateSourceFromFilesInDirectoryAsync(
+            final File dir, final boolean recurseChildren, final Executor executor, final int maxConcurrentIo,
+            final Consumer<? super Source> onSource) {
+        return scan(dir, recurseChildren, executor, maxConcurrentIo, onSource,
+                JarFileSourceCreator::tryCreateSourceFromFile);
+    }
+
+    /**
+     * Attempts to filter a directory for all files contained within that may be Jar files, validating them in
+     * parallel.
+     *
+     * May recurse the children directories if indicated to do so.  The directory is walked lazily and at most
+     * `maxConcurrentIo` files are validated at any one time, regardless of the size of the Executor, so that a scan
+     * cannot saturate the underlying storage.  Each Source is handed to the provided Consumer as soon as it has been
+     * created, on whichever thread created it.  Additionally, the new sources will use the provided ClassLoader as
+     * their parent loaders.
+     * @param dir the directory to inspect.
+     * @param recurseChildren if true, recurse child directories for Jar files.
+     * @param classLoader the parent ClassLoader to form a hierarchy with.
+     * @param executor the Executor to validate files with.
+     * @param maxConcurrentIo the maximum number of files validated at any one time.
+     * @param onSource a Consumer receiving each Source as soon as it is created, or null if none is required.
+     * @return a CompletableFuture completing with a list of the validated Source objects, in the order they were
+     *         created, with null if the input file is not a directory, or exceptionally if the directory could not be
+     *         walked or the Executor rejected a worker.
+     */
+    public static CompletableFuture<List<Source>> tryCreateSourceFromFilesInDirectoryAsync(
+            final File dir, final boolean recurseChildren, final ClassLoader classLoader, final Executor executor,
+            final int maxConcurrentIo, final Consumer<? super Source> onSource) {
+        return tryCreateSourceFromFilesInDirectoryAsync(dir, recurseChildren, classLoader, 0, executor,
+                maxConcurrentIo, onSource);
+    }
+
+    /**
+     * Attempts to filter a directory for all files contained within that may be Jar files, validating them in
+     * parallel.
+     *
+     * May recurse the children directories if indicated to do so.  The directory is walked lazily and at most
+     * `maxConcurrentIo` files are validated at any one time, regardless of the size of the Executor, so that a scan
+     * cannot saturate the underlying storage.  Each Source is handed to the provided Consumer as soon as it has been
+     * created, on whichever thread created it.  Additionally, the new sources will use the provided ClassLoader as
+     * their parent loaders and rank their providers with the given priority.
+     * @param dir the directory to inspect.
+     * @param recurseChildren if true, recurse child directories for Jar files.
+     * @param classLoader the parent ClassLoader to form a hierarchy with.
+     * @param priority the priority of the providers found within the sources relative to those of other sources.
+     * @param executor the Executor to validate files with.
+     * @param maxConcurrentIo the maximum number of files validated at any one time.
+     * @param onSource a Consumer receiving each Source as soon as it is created, or null if none is required.
+     * @return a CompletableFuture completing with a list of the validated Source objects, in the order they were
+     *         created, with null if the input file is not a directory, or exceptionally if the directory could not be
+     *         walked or the Executor rejected a worker.
+     */
+    public static CompletableFuture<List<Source>> tryCreateSourceFromFilesInDirectoryAsync(
+            final File dir, final boolean recurseChildren, final ClassLoader classLoader, final int priority,
+            final Executor executor, final int maxConcurrentIo, final Consumer<? super Source> onSource) {
+        return scan(dir, recurseChildren, executor, maxConcurrentIo, onSource,
+                file -> tryCreateSourceFromFile(file, classLoader, priority));
     }
 
     //endregion
@@ -151,10 +409,27 @@ public final class JarFileSourceCreator {
      * @return true if the file should be Sourced from, false otherwise.
      */
     private static boolean validate(final File file) {
-        return validateIsFile(file) &&
-                validateExtension(file) &&
-                validateFileIsJar(file) &&
-                validateJarHasServices(file);
+        if (!validateIsFile(file) || !validateExtension(file)) {
+            return false;
+        }
+
+        final Object event = FlightRecorderEvents.JAR_VALIDATION.begin();
+        final JarValidationCache cache = validationCache;
+        final JarValidationCache.Stamp stamp = cache != null ? cache.stamp(file) : null;
+        if (cache != null) {
+            final JarValidationCache.Entry entry = cache.lookup(file, stamp);
+            if (entry != null) {
+                FlightRecorderEvents.JAR_VALIDATION.commit(event, file.getPath(), entry.valid, true);
+                return entry.valid;
+            }
+        }
+
+        final List<String> services = validationStrategy.validate(file);
+        if (cache != null) {
+            cache.record(file, stamp, services != null);
+        }
+        FlightRecorderEvents.JAR_VALIDATION.commit(event, file.getPath(), services != null, false);
+        return services != null;
     }
 
     /**
@@ -176,35 +451,79 @@ public final class JarFileSourceCreator {
     }
 
     /**
-     * Validates that the file is a Jar file.
+     * Validates and creates sources for the files of a file tree using a bounded number of concurrent workers.
      *
-     * A jar file is simply a zip archive, therefore, if we can open the file with the ZipFile object, it passes this
-     * test.  This isn't the most efficient way, so.. TODO: implement configurable checks
-     * @param file the file to validate.
-     * @return true if the file is a valid jar file.
+     * Each worker repeatedly takes the next file from a single, lazily walked file tree until none remain, so no more
+     * than `maxConcurrentIo` files are ever validated at once and no worker ever blocks waiting for another.
+     * @param dir the directory to scan for files in.
+     * @param recurseChildren whether or not to walk the whole file tree.
+     * @param executor the Executor to run the workers with.
+     * @param maxConcurrentIo the number of workers.
+     * @param onSource a Consumer receiving each Source as soon as it is created, or null.
+     * @param creator the function validating a file and creating its Source, or returning null.
+     * @return a CompletableFuture completing with the created sources, or exceptionally if the Executor rejected a
+     *         worker, in which case the workers already started stop after the file they are validating.
      */
-    private static boolean validateFileIsJar(final File file) {
-        try (ZipFile zip = new ZipFile(file)){
-            return true;
-        } catch (Exception e) {
-            return false;
+    private static CompletableFuture<List<Source>> scan(final File dir, final boolean recurseChildren,
+                                                        final Executor executor, final int maxConcurrentIo,
+                                                        final Consumer<? super Source> onSource,
+                                                        final Function<File, Source> creator) {
+        if (maxConcurrentIo < 1) {
+            throw new IllegalArgumentException("maxConcurrentIo must be at least 1.");
+        }
+        if (!dir.isDirectory()) {
+            return CompletableFuture.completedFuture(null);
         }
-    }
 
-    /**
-     * Validate the Jar file contains a service provider entry.
-     *
-     * Checks for the presence of any entries underneath the "META-INF/services/" directory within the archive.
-     * @param file the file to validate.
-     * @return true if the jar contains services.
-     */
-    private static boolean validateJarHasServices(final File file) {
-        try (ZipFile jar = new ZipFile(file)) {
-            ZipEntry services = jar.getEntry("META-INF/services/");
-            return services != null;
-        } catch (Exception e) {
-            return false;
+        final Stream<Path> stream;
+        try {
+            stream = recurseChildren ? Files.walk(dir.toPath()) : Files.list(dir.toPath());
+        } catch (IOException e) {
+            final CompletableFuture<List<Source>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        final Iterator<Path> paths = stream.iterator();
+        final AtomicBoolean abandoned = new AtomicBoolean();
+        final Queue<Source> sources = new ConcurrentLinkedQueue<>();
+        final CompletableFuture<?>[] workers = new CompletableFuture<?>[maxConcurrentIo];
+        for (int index = 0; index < workers.length; index++) {
+            try {
+                workers[index] = CompletableFuture.runAsync(() -> {
+                    while (true) {
+                        final File file;
+                        synchronized (paths) {
+                            if (abandoned.get() || !paths.hasNext()) {
+                                return;
+                            }
+                            file = paths.next().toFile();
+                        }
+
+                        final Source source = creator.apply(file);
+                        if (source != null) {
+                            sources.add(source);
+                            if (onSource != null) {
+                                onSource.accept(source);
+                            }
+                        }
+                    }
+                }, executor);
+            } catch (RejectedExecutionException e) {
+                // The workers already started check this flag under the same lock before touching the stream.
+                synchronized (paths) {
+                    abandoned.set(true);
+                    stream.close();
+                }
+                final CompletableFuture<List<Source>> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
         }
+
+        return CompletableFuture.allOf(workers)
+                .whenComplete((done, error) -> stream.close())
+                .thenApply(done -> new ArrayList<>(sources));
     }
 
     /**
@@ -232,7 +551,13 @@ public final class JarFileSourceCreator {
             return null;
         }
 
-        stream.map(Path::toFile).forEach(files::add);
+        try {
+            stream.map(Path::toFile).forEach(files::add);
+        } catch (UncheckedIOException e) {
+            return null;
+        } finally {
+            stream.close();
+        }
         return files;
     }
 
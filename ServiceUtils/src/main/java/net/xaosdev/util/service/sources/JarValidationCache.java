@@ -0,0 +1,342 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.sources;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent record of the validation results of jar files, used by the JarFileSourceCreator.
+ *
+ * Each jar is recorded by its absolute path along with its size, its last modification time and, optionally, a hash
+ * of its contents, all taken before the jar was validated.  As long as none of these change, the recorded result is
+ * reused and the jar is not opened again.  A jar replaced while it was being validated therefore never has its old
+ * result reused.
+ *
+ * The cache is held in memory and only written to its file when `save` is called.  Records of jars that no longer
+ * exist are dropped when the cache is saved, so the file does not grow as plugins are renamed or deleted.  This class
+ * is safe for concurrent use.
+ */
+public final class JarValidationCache {
+
+    //region Fields (Private)
+
+    /**
+     * The magic number identifying a cache file.
+     */
+    private static final int MAGIC = 0x584A5643;
+
+    /**
+     * The version of the cache file format.
+     */
+    private static final short VERSION = 2;
+
+    /**
+     * The file the cache is persisted to.
+     */
+    private final File file;
+
+    /**
+     * Whether or not the contents of jars are hashed to detect changes.
+     */
+    private final boolean hashContents;
+
+    /**
+     * The recorded results, by absolute path.
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    //endregion
+
+    //region Constructors (Public)
+
+    /**
+     * Creates a new JarValidationCache which detects changes by size and last modification time alone.
+     *
+     * If the file exists, its records are loaded.  A missing, unreadable or corrupt file results in an empty cache.
+     * @param file the file the cache is persisted to.
+     */
+    public JarValidationCache(final File file) {
+        this(file, false);
+    }
+
+    /**
+     * Creates a new JarValidationCache.
+     *
+     * If the file exists, its records are loaded.  A missing, unreadable or corrupt file results in an empty cache.
+     * Hashing contents makes change detection reliable on file systems with coarse or unreliable modification times,
+     * at the cost of reading every jar in full whenever it is validated.
+     * @param file the file the cache is persisted to.
+     * @param hashContents whether or not the contents of jars are hashed to detect changes.
+     */
+    public JarValidationCache(final File file, final boolean hashContents) {
+        this.file = file;
+        this.hashContents = hashContents;
+        load();
+    }
+
+    //endregion
+
+    //region Interface (Public)
+
+    /**
+     * Removes all records from this cache.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Writes the records of this cache to its file, first dropping the records of jars that no longer exist.
+     *
+     * The file is replaced atomically where the file system allows it, so a concurrent reader never sees a partially
+     * written cache.  If the cache cannot be written, its file is left untouched and no temporary file is left behind.
+     * @throws IOException if the file could not be written.
+     */
+    public void save() throws IOException {
+        entries.keySet().removeIf(path -> !new File(path).isFile());
+
+        final Path target = file.getAbsoluteFile().toPath();
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        final Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+
+        try {
+            try (DataOutputStream out =
+                         new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> record : entries.entrySet()) {
+                    final Entry entry = record.getValue();
+                    out.writeUTF(record.getKey());
+                    out.writeLong(entry.stamp.size);
+                    out.writeLong(entry.stamp.lastModified);
+                    out.writeUTF(entry.stamp.hash);
+                    out.writeBoolean(entry.valid);
+                }
+            }
+
+            try {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    //endregion
+
+    //region Interface (Package-Private)
+
+    /**
+     * Takes the stamp of a jar file, to be compared with or recorded alongside its validation result.
+     *
+     * The stamp must be taken before the jar is validated.  A jar replaced during validation is then recorded with the
+     * stamp of the file it replaced, which the new file will not match, rather than the other way around.
+     * @param jar the jar file.
+     * @return the current stamp of the jar.
+     */
+    Stamp stamp(final File jar) {
+        return new Stamp(jar.length(), jar.lastModified(), hashContents ? hash(jar) : "");
+    }
+
+    /**
+     * Looks up the recorded result for a jar file.
+     * @param jar the jar file.
+     * @return the recorded result, or null if the jar has not been recorded or has changed since.
+     */
+    Entry lookup(final File jar) {
+        return lookup(jar, stamp(jar));
+    }
+
+    /**
+     * Looks up the recorded result for a jar file.
+     * @param jar the jar file.
+     * @param stamp the current stamp of the jar.
+     * @return the recorded result, or null if the jar has not been recorded or has changed since.
+     */
+    Entry lookup(final File jar, final Stamp stamp) {
+        final Entry entry = entries.get(jar.getAbsolutePath());
+        return entry != null && entry.stamp.equals(stamp) ? entry : null;
+    }
+
+    /**
+     * Records the result of validating a jar file.
+     * @param jar the jar file.
+     * @param stamp the stamp of the jar, taken before it was validated.
+     * @param valid whether or not the jar passed validation.
+     */
+    void record(final File jar, final Stamp stamp, final boolean valid) {
+        entries.put(jar.getAbsolutePath(), new Entry(stamp, valid));
+    }
+
+    //endregion
+
+    //region Interface (Private)
+
+    /**
+     * Loads the records of this cache from its file, if it exists.
+     */
+    private void load() {
+        if (!file.isFile()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                return;
+            }
+            final int count = in.readInt();
+            for (int index = 0; index < count; index++) {
+                final String path = in.readUTF();
+                final long size = in.readLong();
+                final long lastModified = in.readLong();
+                final String hash = in.readUTF();
+                final boolean valid = in.readBoolean();
+                entries.put(path, new Entry(new Stamp(size, lastModified, hash), valid));
+            }
+        } catch (IOException e) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Hashes the contents of a file.
+     * @param jar the file to hash.
+     * @return the hexadecimal SHA-256 hash of the file, or an empty string if it could not be read.
+     */
+    private static String hash(final File jar) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(Files.newInputStream(jar.toPath()), digest)) {
+                final byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
+                    // Reading is all that is required to update the digest.
+                }
+            }
+
+            final StringBuilder builder = new StringBuilder();
+            for (byte b : digest.digest()) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return "";
+        }
+    }
+
+    //endregion
+
+    //region Classes (Package-Private)
+
+    /**
+     * The state of a jar file used to detect changes to it.
+     */
+    static final class Stamp {
+
+        /**
+         * The size of the jar.
+         */
+        final long size;
+
+        /**
+         * The last modification time of the jar.
+         */
+        final long lastModified;
+
+        /**
+         * The hash of the contents of the jar, or an empty string if not hashed.
+         */
+        final String hash;
+
+        /**
+         * Creates a new Stamp.
+         * @param size the size of the jar.
+         * @param lastModified the last modification time of the jar.
+         * @param hash the hash of the contents of the jar.
+         */
+        Stamp(final long size, final long lastModified, final String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Stamp)) {
+                return false;
+            }
+            final Stamp other = (Stamp) o;
+            return size == other.size && lastModified == other.lastModified && hash.equals(other.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + Long.hashCode(lastModified);
+        }
+    }
+
+    /**
+     * A recorded validation result.
+     */
+    static final class Entry {
+
+        /**
+         * The stamp of the jar, taken before it was validated.
+         */
+        final Stamp stamp;
+
+        /**
+         * Whether or not the jar passed validation.
+         */
+        final boolean valid;
+
+        /**
+         * Creates a new Entry.
+         * @param stamp the stamp of the jar, taken before it was validated.
+         * @param valid whether or not the jar passed validation.
+         */
+        Entry(final Stamp stamp, final boolean valid) {
+            this.stamp = stamp;
+            this.valid = valid;
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.sources;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * A strategy used by the JarFileSourceCreator to decide whether a file is a jar worth creating a Source for.
+ *
+ * Strategies are only consulted for files that exist and carry the "jar" extension.  Implementations must be safe for
+ * concurrent use.  See StandardJarValidationStrategy for the strategies shipped with this library.
+ */
+@FunctionalInterface
+public interface JarValidationStrategy {
+
+    /**
+     * Validates a file.
+     * @param file the file to validate.
+     * @return the names of the service entries found within the jar (which may be empty if the strategy does not
+     *         inspect the contents of the jar), or null if the file failed validation.
+     */
+    List<String> validate(File file);
+}
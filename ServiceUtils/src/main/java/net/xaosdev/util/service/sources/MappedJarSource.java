@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.sources;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * A source representing a Jar file that is memory-mapped rather than read through a URLClassLoader.
+ *
+ * The jar is mapped once, when the source is created, and its central directory is read into a hash index of its
+ * entries.  Loading a class is then a single lookup followed by a call to defineClass: stored class files are handed
+ * to the JVM straight from the mapping, and deflated class files are inflated directly into the buffer handed to the
+ * JVM, without the intermediate streams and copies of JarFile.  For plugins with a large number of classes this
+ * shortens startup and reduces the garbage produced while loading.  The ClassLoader of this source is parallel
+ * capable, and the classes it defines have the Jar file as their CodeSource location.
+ *
+ * The package versioning and sealing attributes of the manifest are honoured, but signatures are not verified:
+ * signed jars are rejected, and should be loaded through a URLSource instead.  Multi-release entries are not
+ * interpreted.
+ *
+ * Closing this source releases the mapping; classes already loaded from the source remain usable.  The JVM only
+ * unmaps the file once the mapping has been garbage collected, so on some platforms the Jar file cannot be deleted
+ * or replaced until then.
+ */
+public final class MappedJarSource extends ClassLoaderSource {
+
+    //region Fields (Private)
+
+    /**
+     * The Jar file this source represents.
+     */
+    private final File jar;
+
+    //endregion
+
+    //region Constructors (Public)
+
+    /**
+     * Creates a new MappedJarSource from a Jar file.
+     *
+     * The created ClassLoader uses the system ClassLoader as its parent.
+     * @param jar the Jar file to map.
+     * @throws IOException if the file could not be mapped, is not a valid Jar file, or uses a feature that is not
+     *                     supported, such as Zip64 or signatures.
+     */
+    public MappedJarSource(final File jar) throws IOException {
+        this(jar, ClassLoader.getSystemClassLoader());
+    }
+
+    /**
+     * Creates a new MappedJarSource from a Jar file and a parent ClassLoader.
+     *
+     * @param jar the Jar file to map.
+     * @param classLoader the ClassLoader to treat as the parent loader.
+     * @throws IOException if the file could not be mapped, is not a valid Jar file, or uses a feature that is not
+     *                     supported, such as Zip64 or signatures.
+     */
+    public MappedJarSource(final File jar, final ClassLoader classLoader) throws IOException {
+        this(jar, classLoader, 0);
+    }
+
+    /**
+     * Creates a new MappedJarSource from a Jar file and a parent ClassLoader with the given priority.
+     *
+     * @param jar the Jar file to map.
+     * @param classLoader the ClassLoader to treat as the parent loader.
+     * @param priority the priority of the providers found within this source relative to those of other sources.
+     * @throws IOException if the file could not be mapped, is not a valid Jar file, or uses a feature that is not
+     *                     supported, such as Zip64 or signatures.
+     */
+    public MappedJarSource(final File jar, final ClassLoader classLoader, final int priority) throws IOException {
+        super(new JarBufferClassLoader(ZipCentralDirectory.map(jar), jar.toURI().toURL(), classLoader), priority);
+        this.jar = jar;
+    }
+
+    //endregion
+
+    //region Interface (Public)
+
+    /**
+     * Gets the Jar file this source represents.
+     * @return the Jar file this source represents.
+     */
+    public File getJar() {
+        return jar;
+    }
+
+    //endregion
+
+    //region Interface (Source)
+
+    /**
+     * Checks whether a location lies within the Jar file of this source.
+     * @param location the URL of a resource or the CodeSource location of a class.
+     * @return true if the location lies within the Jar file.
+     */
+    @Override
+    public boolean contains(final URL location) {
+        return ((JarBufferClassLoader) getClassLoader()).contains(location);
+    }
+
+    /**
+     * Releases the mapping of the Jar file.
+     */
+    @Override
+    public void close() {
+        ((JarBufferClassLoader) getClassLoader()).close();
+    }
+
+    //endregion
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.sources;
+
+import net.xaosdev.util.service.Service;
+import net.xaosdev.util.service.Source;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * This class keeps a Service in sync with the Jar files stored in a single local directory.
+ *
+ * When started, the watcher adds a source to the Service for every file in the directory that passes the checks of
+ * JarFileSourceCreator, and then listens for file system events on the directory.  A jar that appears is validated
+ * and added, a jar that is deleted is removed, and a jar that is replaced or rewritten has its old source removed
+ * before the new one is added.  Only the files named by an event are ever inspected, so the cost of an update is
+ * proportional to the change rather than the size of the directory.  Child directories are not watched.
+ *
+ * Events are handled on a single daemon thread.  A file that cannot be brought up to date, for instance because a
+ * ServiceListener of the Service threw, is reported to the uncaught exception handler of that thread and retried on its
+ * next event; the watcher keeps running.  The sources a watcher added remain registered with the Service after the
+ * watcher is closed.
+ */
+public final class PluginDirectoryWatcher implements Closeable {
+
+    //region Fields (Private)
+
+    /**
+     * The Service sources are added to and removed from.
+     */
+    private final Service<?> service;
+
+    /**
+     * The directory being watched.
+     */
+    private final Path directory;
+
+    /**
+     * The parent ClassLoader of created sources, or null if the default parent should be used.
+     */
+    private final ClassLoader parent;
+
+    /**
+     * The sources currently registered by this watcher, keyed by the file they were created from.
+     */
+    private final Map<Path, Entry> entries = new HashMap<>();
+
+    /**
+     * The WatchService listening to the directory, or null if the watcher has not been started.
+     */
+    private WatchService watchService = null;
+
+    /**
+     * The thread handling events, or null if the watcher has not been started.
+     */
+    private Thread thread = null;
+
+    //endregion
+
+    //region Constructors (Public)
+
+    /**
+     * Creates a new PluginDirectoryWatcher for a directory.
+     *
+     * The created sources use the default parent ClassLoader.
+     * @param service the Service to keep in sync with the directory.
+     * @param directory the directory to watch.
+     */
+    public PluginDirectoryWatcher(final Service<?> service, final File directory) {
+        this(service, directory, null);
+    }
+
+    /**
+     * Creates a new PluginDirectoryWatcher for a directory.
+     *
+     * @param service the Service to keep in sync with the directory.
+     * @param directory the directory to watch.
+     * @param classLoader the parent ClassLoader to form a hierarchy with, or null to use the default parent.
+     */
+    public PluginDirectoryWatcher(final Service<?> service, final File directory, final ClassLoader classLoader) {
+        if (service == null) {
+            throw new IllegalArgumentException("Service may not be null.");
+        }
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException("File must be a directory: " + directory);
+        }
+
+        this.service = service;
+        this.directory = directory.toPath();
+        this.parent = classLoader;
+    }
+
+    //endregion
+
+    //region Interface (Public)
+
+    /**
+     * Starts watching the directory.
+     *
+     * The directory is registered with a WatchService before it is scanned, so no file created during the initial
+     * scan is missed.  The initial scan completes before this method returns.
+     * @throws IOException if the directory could not be watched or scanned.
+     * @throws IllegalStateException if the watcher has already been started.
+     */
+    public synchronized void start() throws IOException {
+        if (watchService != null) {
+            throw new IllegalStateException("PluginDirectoryWatcher has already been started.");
+        }
+
+        watchService = directory.getFileSystem().newWatchService();
+        try {
+            directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            rescan(this::update);
+        } catch (IOException | RuntimeException e) {
+            watchService.close();
+            throw e;
+        }
+
+        thread = new Thread(this::run, "PluginDirectoryWatcher-" + directory.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching the directory.
+     *
+     * Sources added by this watcher are NOT removed from the Service.
+     * @throws IOException if the underlying WatchService could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        final WatchService toClose;
+        final Thread toJoin;
+        synchronized (this) {
+            toClose = watchService;
+            toJoin = thread;
+        }
+        if (toClose == null) {
+            return;
+        }
+
+        toClose.close();
+        if (toJoin != null && toJoin != Thread.currentThread()) {
+            try {
+                toJoin.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Gets the sources currently registered by this watcher.
+     * @return an unmodifiable copy of the sources keyed by the file they were created from.
+     */
+    public synchronized Map<Path, Source> getSources() {
+        final Map<Path, Source> sources = new HashMap<>();
+        entries.forEach((path, entry) -> sources.put(path, entry.source));
+        return Collections.unmodifiableMap(sources);
+    }
+
+    //endregion
+
+    //region Interface (Private)
+
+    /**
+     * Handles events until the WatchService is closed or the directory becomes inaccessible.
+     */
+    private void run() {
+        while (true) {
+            final WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (ClosedWatchServiceException | InterruptedException e) {
+                return;
+            }
+
+            // Coalesce the pending events so a jar written in several steps is only inspected once.
+            final Set<Path> changed = new LinkedHashSet<>();
+            boolean overflowed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflowed = true;
+                } else {
+                    changed.add(directory.resolve((Path) event.context()));
+                }
+            }
+
+            synchronized (this) {
+                if (overflowed) {
+                    try {
+                        rescan(this::tryUpdate);
+                    } catch (IOException e) {
+                        // The directory is unreadable; keep the current sources until it can be read again.
+                    }
+                } else {
+                    changed.forEach(this::tryUpdate);
+                }
+            }
+
+            if (!key.reset()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Brings every file in the directory up to date, including files that have disappeared.
+     * @param updater brings a single file up to date.
+     * @throws IOException if the directory could not be listed.
+     */
+    private synchronized void rescan(final Consumer<Path> updater) throws IOException {
+        final Set<Path> paths = new HashSet<>(entries.keySet());
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            stream.forEach(paths::add);
+        }
+        paths.forEach(updater);
+    }
+
+    /**
+     * Brings a single file up to date, reporting any failure to the uncaught exception handler of the current thread
+     * instead of throwing it.
+     * @param path the file to update.
+     */
+    private void tryUpdate(final Path path) {
+        try {
+            update(path);
+        } catch (RuntimeException e) {
+            final Thread current = Thread.currentThread();
+            current.getUncaughtExceptionHandler().uncaughtException(current, e);
+        }
+    }
+
+    /**
+     * Brings a single file up to date.
+     *
+     * The file's current source is kept if the file has not changed since it was created, and replaced otherwise.
+     * A source stays tracked for as long as it is registered with the Service, even if a ServiceListener throws while
+     * it is added or removed.
+     * @param path the file to update.
+     */
+    private void update(final Path path) {
+        final Object fingerprint = fingerprint(path);
+        final Entry current = entries.get(path);
+        if (current != null) {
+            if (current.fingerprint.equals(fingerprint)) {
+                return;
+            }
+            try {
+                service.removeSource(current.source);
+            } catch (UncheckedIOException e) {
+                // The source is removed regardless; its jar is simply released once its ClassLoader is collected.
+            } catch (RuntimeException e) {
+                if (!isRegistered(current.source)) {
+                    entries.remove(path);
+                }
+                throw e;
+            }
+            entries.remove(path);
+        }
+        if (fingerprint == null) {
+            return;
+        }
+
+        final File file = path.toFile();
+        final Source source = parent == null
+                ? JarFileSourceCreator.tryCreateSourceFromFile(file)
+                : JarFileSourceCreator.tryCreateSourceFromFile(file, parent);
+        if (source != null) {
+            entries.put(path, new Entry(source, fingerprint));
+            try {
+                service.addSource(source);
+            } catch (RuntimeException e) {
+                if (!isRegistered(source)) {
+                    entries.remove(path);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Determines whether a source is registered with the Service.
+     * @param source the source to look for.
+     * @return true if the source is registered, or false if it is not or the Service may not be inspected.
+     */
+    private boolean isRegistered(final Source source) {
+        try {
+            return service.getSources().contains(source);
+        } catch (SecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Identifies the current contents of a file without reading it.
+     * @param path the file to identify.
+     * @return an object that changes whenever the file is replaced or rewritten, or null if the file is not a regular
+     *         file.
+     */
+    private static Object fingerprint(final Path path) {
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            return Arrays.asList(attributes.fileKey(), attributes.size(), attributes.lastModifiedTime());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    //endregion
+
+    //region Classes (Private)
+
+    /**
+     * A source registered by this watcher along with the state of the file it was created from.
+     */
+    private static final class Entry {
+
+        /**
+         * The registered source.
+         */
+        private final Source source;
+
+        /**
+         * The fingerprint of the file when the source was created.
+         */
+        private final Object fingerprint;
+
+        /**
+         * Creates a new Entry.
+         * @param source the registered source.
+         * @param fingerprint the fingerprint of the file when the source was created.
+         */
+        private Entry(final Source source, final Object fingerprint) {
+            this.source = source;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.sources;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A source representing a single Jar file that shares its ClassLoader with the other Jar files of its group.
+ *
+ * Loading many small plugins through one ClassLoader avoids creating, and delegating through, a ClassLoader per plugin
+ * and lets classes common to several plugins be loaded once.  Each jar is still its own source: it only claims the
+ * provider-configuration files and provider classes located within its jar (see Source.contains), so adding or
+ * removing it affects only its own providers.  Note, however, that the jars of a group can see each other's classes,
+ * and that permissions granted by ClassLoader, such as those of the SourceFilteringPolicy, apply to the whole group.
+ *
+ * The shared ClassLoader is closed once every source of its group has been closed.
+ *
+ * Groups are created by JarFileSourceCreator.
+ */
+public final class SharedJarSource extends ClassLoaderSource {
+
+    //region Fields (Private)
+
+    /**
+     * The group this source belongs to.
+     */
+    private final Group group;
+
+    /**
+     * The Jar file this source represents.
+     */
+    private final File jar;
+
+    /**
+     * The external form of the location of the Jar file.
+     */
+    private final String location;
+
+    /**
+     * Whether or not this source has been closed.
+     */
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    //endregion
+
+    //region Constructors (Private)
+
+    /**
+     * Creates a new SharedJarSource.
+     * @param group the group this source belongs to.
+     * @param jar the Jar file this source represents.
+     * @param location the location of the Jar file.
+     * @param priority the priority of the providers found within this source.
+     */
+    private SharedJarSource(final Group group, final File jar, final URL location, final int priority) {
+        super(group.classLoader, priority);
+        this.group = group;
+        this.jar = jar;
+        this.location = location.toExternalForm();
+    }
+
+    //endregion
+
+    //region Interface (Public)
+
+    /**
+     * Gets the Jar file this source represents.
+     * @return the Jar file this source represents.
+     */
+    public File getJar() {
+        return jar;
+    }
+
+    //endregion
+
+    //region Interface (Source)
+
+    /**
+     * Checks whether a location lies within the Jar file this source represents.
+     * @param location the URL of a resource or the CodeSource location of a class.
+     * @return true if the location lies within the Jar file.
+     */
+    @Override
+    public boolean contains(final URL location) {
+        String form = location.toExternalForm();
+        if (form.startsWith("jar:")) {
+            final int separator = form.indexOf("!/");
+            form = form.substring("jar:".length(), separator >= 0 ? separator : form.length());
+        }
+        return form.equals(this.location);
+    }
+
+    /**
+     * Releases this source's share of the ClassLoader, closing it if every source of the group has been closed.
+     * @throws IOException if the ClassLoader could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed.compareAndSet(false, true) && group.open.decrementAndGet() == 0) {
+            group.classLoader.close();
+        }
+    }
+
+    //endregion
+
+    //region Interface (Package-Private)
+
+    /**
+     * Creates a group of sources sharing a single ClassLoader.
+     * @param jars the validated Jar files to group, in the order they should be searched for classes.
+     * @param parent the parent ClassLoader to form a hierarchy with, or null to use the default parent.
+     * @param priority the priority of the providers found within the sources of the group.
+     * @return the sources of the group, one per Jar file and in the same order.
+     * @throws MalformedURLException if a Jar file could not be converted to a URL.
+     */
+    static List<SharedJarSource> createGroup(final List<File> jars, final ClassLoader parent, final int priority)
+            throws MalformedURLException {
+        if (jars.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final URL[] urls = new URL[jars.size()];
+        for (int index = 0; index < urls.length; index++) {
+            urls[index] = jars.get(index).toURI().toURL();
+        }
+
+        final URLClassLoader classLoader = parent == null ? new URLClassLoader(urls) : new URLClassLoader(urls, parent);
+        final Group group = new Group(classLoader, urls.length);
+        final List<SharedJarSource> sources = new ArrayList<>(urls.length);
+        for (int index = 0; index < urls.length; index++) {
+            sources.add(new SharedJarSource(group, jars.get(index), urls[index], priority));
+        }
+        return sources;
+    }
+
+    //endregion
+
+    //region Classes (Private)
+
+    /**
+     * The ClassLoader shared by a group of sources along with the number of them still open.
+     */
+    private static final class Group {
+
+        /**
+         * The shared ClassLoader.
+         */
+        private final URLClassLoader classLoader;
+
+        /**
+         * The number of sources of the group that have not been closed.
+         */
+        private final AtomicInteger open;
+
+        /**
+         * Creates a new Group.
+         * @param classLoader the shared ClassLoader.
+         * @param size the number of sources in the group.
+         */
+        private Group(final URLClassLoader classLoader, final int size) {
+            this.classLoader = classLoader;
+            this.open = new AtomicInteger(size);
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.sources;
+
+import net.xaosdev.util.service.ProviderIndex;
+import net.xaosdev.util.service.internal.ServiceDescriptors;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The JarValidationStrategies shipped with this library, from the cheapest to the most thorough.
+ */
+public enum StandardJarValidationStrategy implements JarValidationStrategy {
+    /**
+     * Accepts any file beginning with the signature of a zip local file header.
+     *
+     * Only the first four bytes of each file are read, so this strategy cannot tell whether a jar contains services
+     * and never reports any service entries.
+     */
+    MAGIC_NUMBER {
+        @Override
+        public List<String> validate(final File file) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(file.toPath()))) {
+                return Integer.reverseBytes(in.readInt()) == LOCAL_HEADER_SIGNATURE ? Collections.emptyList() : null;
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    },
+    /**
+     * Accepts archives that can be opened as a java.util.zip.ZipFile and contain a provider index or entries
+     * underneath "META-INF/services/".
+     */
+    ZIP_FILE {
+        @Override
+        public List<String> validate(final File file) {
+            try (ZipFile jar = new ZipFile(file)) {
+                final List<String> services = new ArrayList<>();
+                final Enumeration<? extends ZipEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    addIfService(entries.nextElement().getName(), services);
+                }
+                return services.isEmpty() ? null : services;
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    },
+    /**
+     * Accepts the same archives as ZIP_FILE, but reads only the End of Central Directory record and the central
+     * directory, with positional reads from the tail of the file, in a single pass.  This is the default strategy.
+     *
+     * Zip64 archives, which this strategy cannot read, are handed over to ZIP_FILE.
+     */
+    CENTRAL_DIRECTORY {
+        @Override
+        public List<String> validate(final File file) {
+            try {
+                final List<String> services = new ArrayList<>();
+                for (String name : ZipCentralDirectory.read(file).keySet()) {
+                    addIfService(name, services);
+                }
+                return services.isEmpty() ? null : services;
+            } catch (ZipCentralDirectory.UnsupportedZipException e) {
+                return ZIP_FILE.validate(file);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    };
+
+    //region Fields (Private)
+
+    /**
+     * The signature of a zip local file header, which begins every non-empty zip archive.
+     */
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    //endregion
+
+    //region Interface (Private)
+
+    /**
+     * Adds the name of an entry to a list if it is a service entry.
+     * @param name the name of the entry.
+     * @param services the list of service entries.
+     */
+    private static void addIfService(final String name, final List<String> services) {
+        if (name.equals(ProviderIndex.LOCATION) || name.startsWith(ServiceDescriptors.PREFIX)) {
+            services.add(name);
+        }
+    }
+
+    //endregion
+}
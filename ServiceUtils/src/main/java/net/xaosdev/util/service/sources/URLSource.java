@@ -16,6 +16,7 @@
 
 package net.xaosdev.util.service.sources;
 
+import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
 
@@ -31,9 +32,21 @@ import java.net.URLClassLoader;
  * Additionally, this source will, by default, use an internal version of the URLClassLoader that will exclude
  * services that would be found via the primordial ClassLoader.  This behaviour can be overridden by passing
  * in a custom URLClassLoader of the user's choice.
+ *
+ * Closing this source closes the URLClassLoader it created, releasing the files it opened.  A URLClassLoader passed
+ * in by the user is left open.
  */
 public final class URLSource extends ClassLoaderSource {
 
+    //region Fields (Private)
+
+    /**
+     * Whether or not the URLClassLoader was created by this source.
+     */
+    private final boolean ownsClassLoader;
+
+    //endregion
+
     //region Constructors (Public)
 
     /**
@@ -44,6 +57,7 @@ public final class URLSource extends ClassLoaderSource {
      */
     public URLSource(final URL url) {
         super(new URLClassLoader(new URL[] { url }));
+        ownsClassLoader = true;
     }
 
     /**
@@ -53,7 +67,19 @@ public final class URLSource extends ClassLoaderSource {
      * @param classLoader the ClassLoader to treat as the parent loader.
      */
     public URLSource(final URL url, final ClassLoader classLoader) {
-        super(new URLClassLoader(new URL[] { url }, classLoader));
+        this(url, classLoader, 0);
+    }
+
+    /**
+     * Creates a new URLSource from a given URL and parent ClassLoader with the given priority.
+     *
+     * @param url the URL to load classes from.
+     * @param classLoader the ClassLoader to treat as the parent loader.
+     * @param priority the priority of the providers found within this source relative to those of other sources.
+     */
+    public URLSource(final URL url, final ClassLoader classLoader, final int priority) {
+        super(new URLClassLoader(new URL[] { url }, classLoader), priority);
+        ownsClassLoader = true;
     }
 
     /**
@@ -65,6 +91,22 @@ public final class URLSource extends ClassLoaderSource {
      */
     public URLSource(final URLClassLoader classLoader) {
         super(classLoader);
+        ownsClassLoader = false;
+    }
+
+    //endregion
+
+    //region Interface (Source)
+
+    /**
+     * Closes the URLClassLoader if it was created by this source.
+     * @throws IOException if the URLClassLoader could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (ownsClassLoader) {
+            ((URLClassLoader) getClassLoader()).close();
+        }
     }
 
     //endregion
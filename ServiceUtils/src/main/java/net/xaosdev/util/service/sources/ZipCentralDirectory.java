@@ -0,0 +1,383 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.sources;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipException;
+
+/**
+ * A minimal reader of the central directory of a zip archive held in a ByteBuffer or a file.
+ *
+ * Only the End of Central Directory record and the central directory itself are read, which makes this reader well
+ * suited to memory-mapped archives, where only the pages at the end of the file are ever touched, and to validating
+ * files, where only the tail of the file is read.  Zip64 archives and archives spanning several files are not
+ * supported.
+ */
+final class ZipCentralDirectory {
+
+    //region Fields (Private)
+
+    /**
+     * The signature of the End of Central Directory record.
+     */
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+
+    /**
+     * The size of the End of Central Directory record, excluding its trailing comment.
+     */
+    private static final int EOCD_SIZE = 22;
+
+    /**
+     * The signature of a central directory file header.
+     */
+    private static final int CEN_SIGNATURE = 0x02014b50;
+
+    /**
+     * The size of a central directory file header, excluding its variable length fields.
+     */
+    private static final int CEN_SIZE = 46;
+
+    /**
+     * The signature of a local file header.
+     */
+    private static final int LOC_SIGNATURE = 0x04034b50;
+
+    /**
+     * The size of a local file header, excluding its variable length fields.
+     */
+    private static final int LOC_SIZE = 30;
+
+    /**
+     * The marker used by zip64 archives in place of values too large for the original format.
+     */
+    private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+
+    /**
+     * The general purpose flag indicating names are encoded in UTF-8.
+     */
+    private static final int UTF8_FLAG = 0x800;
+
+    /**
+     * The charset of names not flagged as UTF-8.
+     */
+    private static final Charset DEFAULT_CHARSET = Charset.forName("IBM437");
+
+    //endregion
+
+    //region Constructors (Private)
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ZipCentralDirectory() {}
+
+    //endregion
+
+    //region Interface (Package-Private)
+
+    /**
+     * Memory-maps a file in its entirety, read-only.
+     * @param file the file to map.
+     * @return the mapped file.
+     * @throws IOException if the file could not be mapped or is too large to map at once.
+     */
+    static MappedByteBuffer map(final File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new UnsupportedZipException("Archive too large to map: " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Reads the central directory of an archive.
+     * @param archive the archive, with its position at zero.
+     * @return an unmodifiable mapping of entry names to entries, in central directory order.
+     * @throws ZipException if the archive is malformed.
+     * @throws UnsupportedZipException if the archive uses a feature this reader does not support.
+     */
+    static Map<String, Entry> read(final ByteBuffer archive) throws ZipException {
+        final ByteBuffer buffer = archive.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        final int eocd = findEndOfCentralDirectory(buffer);
+        final long offset = getDirectoryOffset(buffer, eocd, eocd);
+        return readEntries(slice(buffer, (int) offset, eocd), Short.toUnsignedInt(buffer.getShort(eocd + 10)));
+    }
+
+    /**
+     * Reads the central directory of an archive file without mapping it.
+     *
+     * Only the tail of the file holding the End of Central Directory record, and the central directory if it does not
+     * lie within that tail, are read, and the file is closed before returning.
+     * @param file the archive file.
+     * @return an unmodifiable mapping of entry names to entries, in central directory order.
+     * @throws IOException if the file could not be read.
+     * @throws ZipException if the archive is malformed.
+     * @throws UnsupportedZipException if the archive uses a feature this reader does not support.
+     */
+    static Map<String, Entry> read(final File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long length = channel.size();
+            final int tailLength = (int) Math.min(length, EOCD_SIZE + 0xFFFF);
+            final long tailStart = length - tailLength;
+            final ByteBuffer tail = readFully(channel, tailStart, tailLength);
+            final int eocd = findEndOfCentralDirectory(tail);
+            final long end = tailStart + eocd;
+            final long offset = getDirectoryOffset(tail, eocd, end);
+
+            final ByteBuffer directory;
+            if (offset >= tailStart) {
+                directory = slice(tail, (int) (offset - tailStart), eocd);
+            } else if (end - offset > Integer.MAX_VALUE) {
+                throw new UnsupportedZipException("Central directory too large to read: " + file);
+            } else {
+                directory = readFully(channel, offset, (int) (end - offset));
+            }
+            return readEntries(directory, Short.toUnsignedInt(tail.getShort(eocd + 10)));
+        }
+    }
+
+    /**
+     * Locates the data of an entry by reading its local file header.
+     * @param archive the archive the entry was read from, with its position at zero.
+     * @param entry the entry to locate.
+     * @return the position of the entry's data within the archive.
+     * @throws ZipException if the local file header is malformed or the data extends past the end of the archive.
+     */
+    static int getDataOffset(final ByteBuffer archive, final Entry entry) throws ZipException {
+        final ByteBuffer buffer = archive.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        final long header = entry.localOffset;
+        if (header + LOC_SIZE > buffer.limit() || buffer.getInt((int) header) != LOC_SIGNATURE) {
+            throw new ZipException("Invalid local file header: " + entry.name);
+        }
+
+        final int nameLength = Short.toUnsignedInt(buffer.getShort((int) header + 26));
+        final int extraLength = Short.toUnsignedInt(buffer.getShort((int) header + 28));
+        final long data = header + LOC_SIZE + nameLength + extraLength;
+        if (data + entry.compressedSize > buffer.limit()) {
+            throw new ZipException("Truncated entry: " + entry.name);
+        }
+        return (int) data;
+    }
+
+    //endregion
+
+    //region Interface (Private)
+
+    /**
+     * Reads the entries of a central directory.
+     * @param buffer the central directory, starting at position zero, in little-endian order.
+     * @param count the number of entries recorded by the End of Central Directory record.
+     * @return an unmodifiable mapping of entry names to entries, in central directory order.
+     * @throws ZipException if the central directory is malformed.
+     * @throws UnsupportedZipException if the central directory uses a feature this reader does not support.
+     */
+    private static Map<String, Entry> readEntries(final ByteBuffer buffer, final int count) throws ZipException {
+        final Map<String, Entry> entries = new LinkedHashMap<>(count * 4 / 3 + 1);
+        int position = 0;
+        for (int index = 0; index < count; index++) {
+            if (position + CEN_SIZE > buffer.limit() || buffer.getInt(position) != CEN_SIGNATURE) {
+                throw new ZipException("Invalid central directory header.");
+            }
+
+            final int flags = Short.toUnsignedInt(buffer.getShort(position + 8));
+            final int method = Short.toUnsignedInt(buffer.getShort(position + 10));
+            final long compressedSize = Integer.toUnsignedLong(buffer.getInt(position + 20));
+            final long uncompressedSize = Integer.toUnsignedLong(buffer.getInt(position + 24));
+            final int nameLength = Short.toUnsignedInt(buffer.getShort(position + 28));
+            final int extraLength = Short.toUnsignedInt(buffer.getShort(position + 30));
+            final int commentLength = Short.toUnsignedInt(buffer.getShort(position + 32));
+            final long localOffset = Integer.toUnsignedLong(buffer.getInt(position + 42));
+            if (compressedSize == ZIP64_MARKER || uncompressedSize == ZIP64_MARKER || localOffset == ZIP64_MARKER) {
+                throw new UnsupportedZipException("Zip64 archives are not supported.");
+            }
+
+            final int end = position + CEN_SIZE + nameLength;
+            if (end > buffer.limit()) {
+                throw new ZipException("Invalid central directory header.");
+            }
+            final byte[] name = new byte[nameLength];
+            final ByteBuffer slice = buffer.duplicate();
+            slice.position(position + CEN_SIZE);
+            slice.get(name);
+            final String entryName = new String(name, (flags & UTF8_FLAG) != 0 ? StandardCharsets.UTF_8 :
+                    DEFAULT_CHARSET);
+
+            entries.put(entryName, new Entry(entryName, method, compressedSize, uncompressedSize, localOffset));
+            position = end + extraLength + commentLength;
+        }
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Reads the location of the central directory from the End of Central Directory record.
+     * @param buffer the buffer holding the record, in little-endian order.
+     * @param eocd the position of the record within the buffer.
+     * @param end the position of the record within the archive.
+     * @return the position of the central directory within the archive.
+     * @throws ZipException if the central directory does not end before the record.
+     * @throws UnsupportedZipException if the archive is a Zip64 archive.
+     */
+    private static long getDirectoryOffset(final ByteBuffer buffer, final int eocd, final long end)
+            throws ZipException {
+        final int count = Short.toUnsignedInt(buffer.getShort(eocd + 10));
+        final long size = Integer.toUnsignedLong(buffer.getInt(eocd + 12));
+        final long offset = Integer.toUnsignedLong(buffer.getInt(eocd + 16));
+        if (count == 0xFFFF || size == ZIP64_MARKER || offset == ZIP64_MARKER) {
+            throw new UnsupportedZipException("Zip64 archives are not supported.");
+        }
+        if (offset + size > end) {
+            throw new ZipException("Invalid central directory.");
+        }
+        return offset;
+    }
+
+    /**
+     * Creates a little-endian view of a region of a buffer.
+     * @param buffer the buffer to view.
+     * @param start the position the view starts at.
+     * @param end the position the view ends at, exclusive.
+     * @return a view of the region, starting at position zero.
+     */
+    private static ByteBuffer slice(final ByteBuffer buffer, final int start, final int end) {
+        final ByteBuffer region = buffer.duplicate();
+        region.limit(end).position(start);
+        return region.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Reads a region of a file with positional reads, leaving the position of the channel untouched.
+     * @param channel the channel to read from.
+     * @param position the position of the region within the file.
+     * @param length the length of the region.
+     * @return a little-endian buffer holding the region, starting at position zero.
+     * @throws IOException if the region could not be read or extends past the end of the file.
+     */
+    private static ByteBuffer readFully(final FileChannel channel, final long position, final int length)
+            throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new ZipException("Unexpected end of archive.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Locates the End of Central Directory record by scanning backwards over the trailing comment, if any.
+     * @param buffer the archive, in little-endian order.
+     * @return the position of the End of Central Directory record.
+     * @throws ZipException if no record could be found.
+     */
+    private static int findEndOfCentralDirectory(final ByteBuffer buffer) throws ZipException {
+        final int last = buffer.limit() - EOCD_SIZE;
+        final int first = Math.max(0, last - 0xFFFF);
+        for (int position = last; position >= first; position--) {
+            if (buffer.getInt(position) == EOCD_SIGNATURE &&
+                    position + EOCD_SIZE + Short.toUnsignedInt(buffer.getShort(position + 20)) <= buffer.limit()) {
+                return position;
+            }
+        }
+        throw new ZipException("End of central directory not found.");
+    }
+
+    //endregion
+
+    //region Classes (Package-Private)
+
+    /**
+     * Thrown when an archive may well be valid, but uses a feature this reader does not support.
+     */
+    static final class UnsupportedZipException extends ZipException {
+
+        /**
+         * The serialization version of this exception.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates a new UnsupportedZipException.
+         * @param message the detail message.
+         */
+        UnsupportedZipException(final String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * An entry of the central directory.
+     */
+    static final class Entry {
+
+        /**
+         * The name of the entry.
+         */
+        final String name;
+
+        /**
+         * The compression method of the entry (0 for stored, 8 for deflated).
+         */
+        final int method;
+
+        /**
+         * The size of the entry's data within the archive.
+         */
+        final long compressedSize;
+
+        /**
+         * The size of the entry's data once uncompressed.
+         */
+        final long size;
+
+        /**
+         * The position of the entry's local file header within the archive.
+         */
+        final long localOffset;
+
+        /**
+         * Creates a new Entry.
+         * @param name the name of the entry.
+         * @param method the compression method of the entry.
+         * @param compressedSize the size of the entry's data within the archive.
+         * @param size the size of the entry's data once uncompressed.
+         * @param localOffset the position of the entry's local file header within the archive.
+         */
+        Entry(final String name, final int method, final long compressedSize, final long size,
+              final long localOffset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localOffset = localOffset;
+        }
+    }
+
+    //endregion
+}
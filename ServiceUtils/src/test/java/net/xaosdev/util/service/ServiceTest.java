@@ -16,19 +16,31 @@
 
 package net.xaosdev.util.service;
 
+import testing.consumer.impl.TestServiceImpl;
 import testing.producer.spi.TestService;
 import net.xaosdev.util.service.sources.ClassLoaderSource;
+import net.xaosdev.util.service.sources.URLSource;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
 public class ServiceTest {
 
+    private static final String PATH_TO_JAR = "../Test Artifacts/build/exported/Test Impl 1.jar";
+
     private Service<TestService> testingService;
     private List<Source> defaultSources;
 
@@ -134,4 +146,457 @@ public class ServiceTest {
             assert(impl.returnTrue());
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getSourcesIsSnapshot() {
+        // Arrange
+        final Collection<Source> before = testingService.getSources();
+        final long version = testingService.getVersion();
+
+        // Act
+        testingService.addSource(new ClassLoaderSource());
+        testingService.removeSource(defaultSources.get(0));
+
+        // Assert
+        assertEquals(defaultSources.size(), before.size());
+        assert(before.containsAll(defaultSources));
+        assertEquals(version + 2, testingService.getVersion());
+    }
+
+    @Test
+    public void concurrentReadsAndWrites() throws Exception {
+        // Arrange
+        final Service<TestService> service = new Service<>(TestService.class);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final List<Future<?>> readers = new ArrayList<>();
+
+        // Act
+        for (int index = 0; index < 3; index++) {
+            readers.add(executor.submit(() -> {
+                while (writing.get()) {
+                    service.getServiceStream().forEach(impl -> {
+                        assert(impl.returnTrue());
+                    });
+                }
+                return null;
+            }));
+        }
+
+        final List<Source> added = new ArrayList<>();
+        for (int index = 0; index < 200; index++) {
+            final Source source = new ClassLoaderSource();
+            added.add(source);
+            service.addSource(source);
+            if (index % 2 == 1) {
+                service.removeSource(added.get(index - 1));
+            }
+        }
+        writing.set(false);
+
+        // Assert
+        for (Future<?> reader : readers) {
+            reader.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertEquals(100, service.getSources().size());
+        assertEquals(100, service.getServiceStream().count());
+        assertEquals(300, service.getVersion());
+    }
+
+    @Test
+    public void singletonScopeSharesInstances() {
+        // Arrange
+        final Service<TestService> service = new Service<>(TestService.class, Scope.SINGLETON);
+        service.addSource(new ClassLoaderSource());
+
+        // Act
+        final TestService first = service.getServiceStream().findFirst().get();
+        final TestService second = service.getServiceStream().findFirst().get();
+
+        // Assert
+        assertSame(first, second);
+    }
+
+    @Test
+    public void prototypeScopeCreatesInstances() {
+        // Arrange
+        final Service<TestService> service = new Service<>(TestService.class, Scope.PROTOTYPE);
+        service.addSource(new ClassLoaderSource());
+
+        // Act
+        final TestService first = service.getServiceStream().findFirst().get();
+        final TestService second = service.getServiceStream().findFirst().get();
+
+        // Assert
+        assertNotSame(first, second);
+        assert(second.returnTrue());
+    }
+
+    @Test
+    public void threadScopeConfinesInstances() throws Exception {
+        // Arrange
+        final Service<TestService> service = new Service<>(TestService.class, Scope.THREAD);
+        service.addSource(new ClassLoaderSource());
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // Act
+        final TestService first = service.getServiceStream().findFirst().get();
+        final TestService second = service.getServiceStream().findFirst().get();
+        final TestService other = executor.submit(() -> service.getServiceStream().findFirst().get()).get();
+        executor.shutdown();
+
+        // Assert
+        assertSame(first, second);
+        assertNotSame(first, other);
+    }
+
+    @Test
+    public void getProviderHandlesDoesNotInstantiate() {
+        // Arrange
+        final Service<TestService> service = new Service<>(TestService.class);
+        final ClassLoaderSource source = new ClassLoaderSource();
+        service.addSource(source);
+        final int instances = TestServiceImpl.INSTANCES.get();
+
+        // Act
+        final List<ProviderHandle<TestService>> handles = new ArrayList<>();
+        service.getProviderHandles().forEach(handles::add);
+
+        // Assert
+        assertEquals(instances, TestServiceImpl.INSTANCES.get());
+        assertEquals(1, handles.size());
+        assertEquals(TestServiceImpl.class.getName(), handles.get(0).getName());
+        assertEquals(source.getUUID(), handles.get(0).getSourceUUID());
+        assertEquals(TestServiceImpl.class, handles.get(0).type());
+        assertEquals(instances, TestServiceImpl.INSTANCES.get());
+        final TestService provider = handles.get(0).get();
+        assertTrue(provider.returnTrue());
+        assertEquals(instances + 1, TestServiceImpl.INSTANCES.get());
+        assertSame(handles.get(0).get(), service.getServiceStream().findFirst().get());
+    }
+
+    @Test
+    public void getParallelServiceStream() {
+        // Arrange
+        for (int index = 0; index < 50; index++) {
+            testingService.addSource(new ClassLoaderSource());
+        }
+
+        // Act
+        final List<TestService> sequential = testingService.getServiceStream().collect(Collectors.toList());
+        final List<TestService> parallel = testingService.getParallelServiceStream().collect(Collectors.toList());
+
+        // Assert
+        assertEquals(55, parallel.size());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void getServicesAsync() throws Exception {
+        // Arrange
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        for (int index = 0; index < 50; index++) {
+            testingService.addSource(new ClassLoaderSource());
+        }
+
+        // Act
+        final List<TestService> ordered = testingService.getServicesAsync(pool, true).get(30, TimeUnit.SECONDS);
+        final List<TestService> unordered = testingService.getServicesAsync(pool, false).get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        // Assert
+        assertEquals(testingService.getServiceStream().collect(Collectors.toList()), ordered);
+        assertEquals(55, unordered.size());
+        assert(unordered.containsAll(ordered));
+    }
+
+    @Test
+    public void getServiceStreamScalesToManySources() {
+        // Arrange
+        final Service<TestService> service = new Service<>(TestService.class);
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        final List<Source> sources = new ArrayList<>();
+        for (int index = 0; index < 10000; index++) {
+            sources.add(new ClassLoaderSource(classLoader));
+        }
+        service.addSources(sources);
+
+        // Act / Assert
+        assertEquals(10000, service.getSources().size());
+        assertEquals(10000, service.getProviderHandles().count());
+        assertEquals(10000, service.getServiceStream().count());
+        assertEquals(10000, service.getServiceStream().filter(TestService::returnTrue).count());
+        assertEquals(10000, service.getParallelServiceStream().count());
+    }
+
+    @Test
+    public void addSources() {
+        // Arrange
+        final List<Source> sources = new ArrayList<>();
+        for (int index = 0; index < 3; index++) {
+            sources.add(new ClassLoaderSource());
+        }
+        final long version = testingService.getVersion();
+
+        // Act
+        testingService.addSources(sources);
+
+        // Assert
+        assert(testingService.getSources().containsAll(sources));
+        assertEquals(version + 1, testingService.getVersion());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void addSourcesPresent() {
+        // Arrange
+        final List<Source> sources = new ArrayList<>();
+        sources.add(new ClassLoaderSource());
+        sources.add(defaultSources.get(0));
+
+        // Act
+        testingService.addSources(sources);
+
+        // Assert - not needed
+    }
+
+    @Test
+    public void listenerNotifiedOfAddAndRemove() {
+        // Arrange
+        final List<ServiceEvent<TestService>> events = new ArrayList<>();
+        testingService.addListener(events::add);
+        final ClassLoaderSource source = new ClassLoaderSource();
+
+        // Act
+        testingService.addSource(source);
+        final long added = testingService.getVersion();
+        testingService.removeSource(source);
+
+        // Assert
+        assertEquals(2, events.size());
+        assertEquals(ServiceEvent.Type.SOURCE_ADDED, events.get(0).getType());
+        assertSame(source, events.get(0).getSource());
+        assertEquals(added, events.get(0).getVersion());
+        assertEquals(ServiceEvent.Type.SOURCE_REMOVED, events.get(1).getType());
+        assertSame(source, events.get(1).getSource());
+        assertEquals(added + 1, events.get(1).getVersion());
+        assertTrue(events.get(1).getHandles().isEmpty());
+    }
+
+    @Test
+    public void listenerNotifiedOfDiscovery() {
+        // Arrange
+        final ClassLoaderSource source = new ClassLoaderSource();
+        testingService.addSource(source);
+        final List<ServiceEvent<TestService>> events = new ArrayList<>();
+        testingService.addListener(event -> {
+            if (event.getSource() == source) {
+                events.add(event);
+            }
+        });
+
+        // Act
+        testingService.getServiceStream().count();
+        testingService.getServiceStream().count();
+        testingService.removeSource(source);
+
+        // Assert
+        assertEquals(2, events.size());
+        assertEquals(ServiceEvent.Type.PROVIDERS_DISCOVERED, events.get(0).getType());
+        assertEquals(1, events.get(0).getHandles().size());
+        assertEquals(ServiceEvent.Type.SOURCE_REMOVED, events.get(1).getType());
+        assertEquals(events.get(0).getHandles(), events.get(1).getHandles());
+    }
+
+    @Test
+    public void removeListener() {
+        // Arrange
+        final List<ServiceEvent<TestService>> events = new ArrayList<>();
+        final ServiceListener<TestService> listener = events::add;
+        testingService.addListener(listener);
+
+        // Act
+        final boolean removed = testingService.removeListener(listener);
+        testingService.addSource(new ClassLoaderSource());
+
+        // Assert
+        assertTrue(removed);
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void getProvidersBySubtype() {
+        // Act
+        final List<TestServiceImpl> implementations = testingService.getProviders(TestServiceImpl.class)
+                .collect(Collectors.toList());
+        final long all = testingService.getProviders(TestService.class).count();
+
+        // Assert
+        assertEquals(defaultSources.size(), implementations.size());
+        assertEquals(testingService.getServiceStream().count(), all);
+    }
+
+    @Test
+    public void getProvidersOnlyInstantiatesMatches() {
+        // Arrange
+        final Service<TestService> service = new Service<>(TestService.class, Scope.PROTOTYPE);
+        defaultSources.forEach(service::addSource);
+        final int instances = TestServiceImpl.INSTANCES.get();
+
+        // Act
+        final long matches = service.getProviders(UnimplementedService.class).count();
+
+        // Assert
+        assertEquals(0, matches);
+        assertEquals(instances, TestServiceImpl.INSTANCES.get());
+    }
+
+    @Test
+    public void getProvidersReflectsRemovedSources() {
+        // Arrange
+        assertEquals(defaultSources.size(), testingService.getProviders(TestServiceImpl.class).count());
+
+        // Act
+        testingService.removeSource(defaultSources.get(0));
+
+        // Assert
+        assertEquals(defaultSources.size() - 1, testingService.getProviders(TestServiceImpl.class).count());
+    }
+
+    @Test
+    public void getBestPrefersSourcePriority() {
+        // Arrange
+        final ClassLoaderSource preferred = new ClassLoaderSource(getClass().getClassLoader(), 10);
+        final ClassLoaderSource deferred = new ClassLoaderSource(getClass().getClassLoader(), -10);
+        testingService.addSource(deferred);
+        testingService.addSource(preferred);
+        final TestService expected = handleOf(preferred).get();
+
+        // Act
+        final TestService best = testingService.getBest().get();
+        final List<TestService> prioritized = testingService.getPrioritizedServiceStream()
+                .collect(Collectors.toList());
+
+        // Assert
+        assertSame(expected, best);
+        assertSame(expected, prioritized.get(0));
+        assertSame(handleOf(deferred).get(), prioritized.get(prioritized.size() - 1));
+        assertEquals(testingService.getServiceStream().count(), prioritized.size());
+    }
+
+    @Test
+    public void getBestDoesNotInstantiateOthers() {
+        // Arrange
+        final Service<TestService> service = new Service<>(TestService.class, Scope.PROTOTYPE);
+        defaultSources.forEach(service::addSource);
+        final int instances = TestServiceImpl.INSTANCES.get();
+
+        // Act
+        final boolean present = service.getBest().isPresent();
+
+        // Assert
+        assertTrue(present);
+        assertEquals(instances + 1, TestServiceImpl.INSTANCES.get());
+    }
+
+    @Test
+    public void getFirst() {
+        // Act
+        final TestService first = testingService.getFirst().get();
+
+        // Assert
+        assertSame(handleOf(defaultSources.get(0)).get(), first);
+        assertFalse(new Service<>(TestService.class).getFirst().isPresent());
+        assertFalse(new Service<>(TestService.class).getBest().isPresent());
+    }
+
+    @Test
+    public void closeRemovesAllSources() {
+        // Arrange
+        final List<ServiceEvent<TestService>> events = new ArrayList<>();
+        testingService.addListener(events::add);
+        final long version = testingService.getVersion();
+
+        // Act
+        testingService.close();
+
+        // Assert
+        assertTrue(testingService.getSources().isEmpty());
+        assertEquals(0, testingService.getServiceStream().count());
+        assertEquals(version + 1, testingService.getVersion());
+        assertEquals(defaultSources.size(), events.size());
+        events.forEach(event -> assertEquals(ServiceEvent.Type.SOURCE_REMOVED, event.getType()));
+    }
+
+    @Test
+    public void warmUpReportsEverySource() throws Exception {
+        // Arrange
+        final int instances = TestServiceImpl.INSTANCES.get();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // Act
+        final WarmUpReport report;
+        try {
+            report = testingService.warmUp(executor).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Assert
+        assertEquals(defaultSources.size(), report.getSourceReports().size());
+        assertFalse(report.hasFailures());
+        for (int index = 0; index < defaultSources.size(); index++) {
+            final WarmUpReport.SourceReport sourceReport = report.getSourceReports().get(index);
+            assertEquals(defaultSources.get(index).getUUID(), sourceReport.getSourceUUID());
+            assertEquals(1, sourceReport.getProviderCount());
+            assertTrue(sourceReport.getClassCount() >= 1);
+        }
+        assertEquals(instances, TestServiceImpl.INSTANCES.get());
+    }
+
+    @Test
+    public void warmUpSingleSource() throws Exception {
+        // Arrange
+        final Source source = defaultSources.get(2);
+
+        // Act
+        final WarmUpReport report = testingService.warmUp(source, ForkJoinPool.commonPool()).get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(1, report.getSourceReports().size());
+        assertNotNull(report.getSourceReport(source.getUUID()));
+        assertNull(report.getSourceReport(defaultSources.get(0).getUUID()));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void warmUpUnknownSource() {
+        testingService.warmUp(new ClassLoaderSource(), ForkJoinPool.commonPool());
+    }
+
+    @Test
+    public void warmUpRecordsFailures() throws Exception {
+        // Arrange
+        final Service<TestService> service = new Service<>(TestService.class);
+        // The SPI is not visible from the bootstrap ClassLoader, so the provider cannot be loaded.
+        final Source source = new URLSource(new File(PATH_TO_JAR).toURI().toURL(), null);
+        service.addSource(source);
+
+        // Act
+        final WarmUpReport report = service.warmUp(ForkJoinPool.commonPool()).get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertTrue(report.hasFailures());
+        assertEquals(1, report.getSourceReports().get(0).getProviderCount());
+        assertEquals(0, report.getSourceReports().get(0).getClassCount());
+    }
+
+    private ProviderHandle<TestService> handleOf(final Source source) {
+        return testingService.getProviderHandles()
+                .filter(handle -> handle.getSourceUUID().equals(source.getUUID()))
+                .findFirst()
+                .get();
+    }
+
+    private interface UnimplementedService extends TestService {
+    }
+}
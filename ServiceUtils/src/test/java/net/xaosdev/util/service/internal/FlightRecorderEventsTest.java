@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.internal;
+
+import net.xaosdev.util.service.Service;
+import net.xaosdev.util.service.Source;
+import net.xaosdev.util.service.sources.ClassLoaderSource;
+import net.xaosdev.util.service.sources.JarFileSourceCreator;
+import org.junit.Assume;
+import org.junit.Test;
+import testing.producer.spi.TestService;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FlightRecorderEventsTest {
+
+    private static final File IMPL_1 = new File("../Test Artifacts/build/exported/Test Impl 1.jar");
+    private static final String IMPL_1_PROVIDER = "testing.consumer.impl.TestServiceImpl1";
+
+    @Test
+    public void noEventWithoutRecording() {
+        // Act / Assert
+        assertNull(FlightRecorderEvents.PROVIDER_LOAD.begin());
+        FlightRecorderEvents.PROVIDER_LOAD.commit(null, "ignored", "ignored", "ignored");
+    }
+
+    @Test
+    public void eventsAreRecorded() throws Exception {
+        // Arrange
+        Assume.assumeTrue(FlightRecorderEvents.isAvailable());
+        final Service<TestService> service = new Service<>(TestService.class);
+        final Source source = JarFileSourceCreator.tryCreateSourceFromFile(IMPL_1);
+
+        // Act
+        final Map<String, Object> events = new HashMap<>();
+        for (Object event : record(() -> {
+            service.addSource(source);
+            service.getServiceStream().count();
+        })) {
+            events.put(getName(event), event);
+        }
+
+        // Assert
+        assertNotNull(events.get(FlightRecorderEvents.SOURCE_ADDED.getName()));
+        assertNotNull(events.get(FlightRecorderEvents.PROVIDER_LOAD.getName()));
+        final Object instantiation = events.get(FlightRecorderEvents.PROVIDER_INSTANTIATION.getName());
+        assertNotNull(instantiation);
+        final Method getString = instantiation.getClass().getMethod("getString", String.class);
+        assertEquals(source.getUUID().toString(), getString.invoke(instantiation, "sourceUUID"));
+        assertEquals(TestService.class.getName(), getString.invoke(instantiation, "service"));
+        assertEquals(IMPL_1_PROVIDER, getString.invoke(instantiation, "provider"));
+    }
+
+    @Test
+    public void jarValidationIsRecorded() throws Exception {
+        // Arrange
+        Assume.assumeTrue(FlightRecorderEvents.isAvailable());
+
+        // Act
+        final Set<String> names = new HashSet<>();
+        for (Object event : record(() -> JarFileSourceCreator.tryCreateSourceFromFile(IMPL_1))) {
+            names.add(getName(event));
+        }
+
+        // Assert
+        assertTrue(names.contains(FlightRecorderEvents.JAR_VALIDATION.getName()));
+    }
+
+    @Test
+    public void bulkAdditionsAreRecorded() throws Exception {
+        // Arrange
+        Assume.assumeTrue(FlightRecorderEvents.isAvailable());
+        final Service<TestService> service = new Service<>(TestService.class);
+        final List<Source> sources = Arrays.asList(new ClassLoaderSource(), new ClassLoaderSource());
+
+        // Act
+        final Set<String> added = new HashSet<>();
+        for (Object event : record(() -> service.addSources(sources))) {
+            if (FlightRecorderEvents.SOURCE_ADDED.getName().equals(getName(event))) {
+                added.add((String) event.getClass().getMethod("getString", String.class).invoke(event, "sourceUUID"));
+            }
+        }
+
+        // Assert
+        assertEquals(new HashSet<>(Arrays.asList(sources.get(0).getUUID().toString(),
+                sources.get(1).getUUID().toString())), added);
+    }
+
+    private List<?> record(final Runnable action) throws Exception {
+        final Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+        final Object recording = recordingClass.getConstructor().newInstance();
+        final Path dump = Files.createTempFile("FlightRecorderEventsTest", ".jfr");
+        try {
+            recordingClass.getMethod("start").invoke(recording);
+            try {
+                action.run();
+            } finally {
+                recordingClass.getMethod("stop").invoke(recording);
+            }
+            recordingClass.getMethod("dump", Path.class).invoke(recording, dump);
+
+            return (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+                    .getMethod("readAllEvents", Path.class).invoke(null, dump);
+        } finally {
+            recordingClass.getMethod("close").invoke(recording);
+            Files.delete(dump);
+        }
+    }
+
+    private String getName(final Object event) throws Exception {
+        final Object type = Class.forName("jdk.jfr.consumer.RecordedEvent").getMethod("getEventType").invoke(event);
+        return (String) Class.forName("jdk.jfr.EventType").getMethod("getName").invoke(type);
+    }
+}
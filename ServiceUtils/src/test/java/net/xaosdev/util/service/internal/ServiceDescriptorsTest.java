@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.internal;
+
+import net.xaosdev.util.service.ProviderIndex;
+import org.junit.Test;
+import testing.producer.spi.TestService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ServiceDescriptorsTest {
+
+    private static final String SERVICE = TestService.class.getName();
+
+    @Test
+    public void unindexedServiceIsReadFromDescriptor() throws Exception {
+        // Arrange
+        final Path root = Files.createTempDirectory("descriptors");
+        writeIndex(root, "other.Service", "a.Other");
+        writeDescriptor(root, "a.First");
+
+        // Act
+        final List<String> providers = read(root);
+
+        // Assert
+        assertEquals(Collections.singletonList("a.First"), providers);
+    }
+
+    @Test
+    public void indexedServiceIgnoresDescriptor() throws Exception {
+        // Arrange
+        final Path root = Files.createTempDirectory("descriptors");
+        writeIndex(root, SERVICE, "a.Indexed");
+        writeDescriptor(root, "a.Stale");
+
+        // Act
+        final List<String> providers = read(root);
+
+        // Assert
+        assertEquals(Collections.singletonList("a.Indexed"), providers);
+    }
+
+    @Test
+    public void declarationOrderFollowsClassLoader() throws Exception {
+        // Arrange
+        final Path first = Files.createTempDirectory("descriptors");
+        writeDescriptor(first, "a.First");
+        final Path second = Files.createTempDirectory("descriptors");
+        writeIndex(second, SERVICE, "a.Second");
+        writeDescriptor(second, "a.Second");
+        final Path third = Files.createTempDirectory("descriptors");
+        writeDescriptor(third, "a.Third");
+
+        // Act
+        final List<String> providers = read(first, second, third);
+
+        // Assert
+        assertEquals(Arrays.asList("a.First", "a.Second", "a.Third"), providers);
+    }
+
+    private static List<String> read(final Path... roots) throws IOException {
+        final URL[] urls = new URL[roots.length];
+        for (int index = 0; index < roots.length; index++) {
+            urls[index] = roots[index].toUri().toURL();
+        }
+        try (URLClassLoader classLoader = new URLClassLoader(urls, null)) {
+            return ServiceDescriptors.read(TestService.class, classLoader);
+        }
+    }
+
+    private static void writeIndex(final Path root, final String service, final String provider) throws IOException {
+        final Path index = root.resolve(ProviderIndex.LOCATION);
+        Files.createDirectories(index.getParent());
+        try (OutputStream out = Files.newOutputStream(index)) {
+            ProviderIndex.write(out, Collections.singletonMap(service, Collections.singletonList(provider)));
+        }
+    }
+
+    private static void writeDescriptor(final Path root, final String provider) throws IOException {
+        final Path descriptor = root.resolve(ServiceDescriptors.PREFIX + SERVICE);
+        Files.createDirectories(descriptor.getParent());
+        Files.write(descriptor, (provider + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+}
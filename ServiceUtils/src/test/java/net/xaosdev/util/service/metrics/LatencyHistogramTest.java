@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.metrics;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void empty() {
+        // Arrange
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        // Act
+        final Map<String, Long> summary = histogram.toMap();
+
+        // Assert
+        for (long value : summary.values()) {
+            assertEquals(0, value);
+        }
+    }
+
+    @Test
+    public void record() {
+        // Arrange
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        // Act
+        for (long nanos = 1; nanos <= 100; nanos++) {
+            histogram.record(nanos);
+        }
+
+        // Assert
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getTotalNanos());
+        assertEquals(50, histogram.getMeanNanos());
+        assertEquals(100, histogram.getMaxNanos());
+        assertEquals(63, histogram.getPercentileNanos(50)); // 50 falls within [32, 64)
+        assertEquals(100, histogram.getPercentileNanos(99)); // [64, 128) is capped by the maximum
+        assertEquals(1, histogram.getPercentileNanos(0));
+    }
+
+    @Test
+    public void recordNegative() {
+        // Arrange
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        // Act
+        histogram.record(-5);
+
+        // Assert
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getTotalNanos());
+        assertEquals(0, histogram.getPercentileNanos(100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void percentileOutOfRange() {
+        // Arrange
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        // Act
+        histogram.getPercentileNanos(101);
+
+        // Assert - not needed
+    }
+}
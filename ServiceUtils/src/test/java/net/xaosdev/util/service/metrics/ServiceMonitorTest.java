@@ -0,0 +1,196 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.metrics;
+
+import net.xaosdev.util.service.Scope;
+import net.xaosdev.util.service.Service;
+import net.xaosdev.util.service.ServiceMetrics;
+import net.xaosdev.util.service.Source;
+import net.xaosdev.util.service.sources.ClassLoaderSource;
+import org.junit.Before;
+import org.junit.Test;
+import testing.producer.spi.TestService;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ServiceMonitorTest {
+
+    private StandardServiceMetrics metrics;
+    private Service<TestService> service;
+    private Source source;
+
+    @Before
+    public void setUp() {
+        // Arrange - common
+        metrics = new StandardServiceMetrics();
+        service = new Service<>(TestService.class, Scope.PROTOTYPE, metrics);
+        source = new ClassLoaderSource();
+        service.addSource(source);
+    }
+
+    @Test
+    public void defaultMetrics() {
+        // Arrange
+        final Service<TestService> plain = new Service<>(TestService.class);
+
+        // Act
+        final ServiceMetrics defaultMetrics = plain.getMetrics();
+
+        // Assert
+        assertSame(ServiceMetrics.NONE, defaultMetrics);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void monitorRequiresStandardMetrics() {
+        // Arrange
+        final Service<TestService> plain = new Service<>(TestService.class);
+
+        // Act
+        new ServiceMonitor(plain);
+
+        // Assert - not needed
+    }
+
+    @Test
+    public void countsProviders() {
+        // Act
+        final List<TestService> first = service.getServiceStream().collect(Collectors.toList());
+        final List<TestService> second = service.getServiceStream().collect(Collectors.toList());
+
+        // Assert
+        assertFalse(first.isEmpty());
+        assertEquals(1, metrics.getSourcesAdded());
+        assertEquals(2, metrics.getStreamsRequested());
+        assertEquals(first.size() + second.size(), metrics.getProvidersInstantiated());
+        assertEquals(metrics.getProvidersInstantiated(), metrics.getInstantiationLatency().getCount());
+        assertEquals(0, metrics.getInstantiationFailures());
+        assertEquals(metrics.getProvidersInstantiated(),
+                (long) metrics.getInstantiatedProviders().get(source.getUUID()));
+        assert(metrics.getDeclaredProviders().get(source.getUUID()) >= first.size());
+    }
+
+    @Test
+    public void countsEveryRequestOnce() {
+        // Act
+        service.getFirst();
+        service.getBest();
+        service.getServicesAsync(ForkJoinPool.commonPool(), true).join();
+        service.getParallelServiceStream().count();
+
+        // Assert
+        assertEquals(4, metrics.getStreamsRequested());
+    }
+
+    @Test
+    public void rejectedDuplicateIsNotCounted() {
+        // Act
+        try {
+            service.addSource(source);
+            fail("A source was added twice.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        // Assert
+        assertEquals(1, metrics.getSourcesAdded());
+        assertEquals(1, metrics.getSourceCount());
+    }
+
+    @Test
+    public void monitorFollowsService() {
+        // Arrange
+        final ServiceMonitor monitor = new ServiceMonitor(service);
+        final Source added = new ClassLoaderSource();
+
+        // Act
+        service.addSource(added);
+        final long addedVersion = monitor.getVersion();
+        final int addedCount = monitor.getSourceCount();
+        service.removeSource(source);
+
+        // Assert
+        assertEquals(2, addedCount);
+        assertEquals(addedVersion + 1, monitor.getVersion());
+        assertEquals(service.getVersion(), monitor.getVersion());
+        assertEquals(1, monitor.getSourceCount());
+    }
+
+    @Test
+    public void forgetsRemovedSources() {
+        // Arrange
+        service.getServiceStream().forEach(provider -> { });
+
+        // Act
+        service.removeSource(source);
+
+        // Assert
+        assertEquals(1, metrics.getSourcesRemoved());
+        assert(metrics.getDeclaredProviders().isEmpty());
+        assert(metrics.getInstantiatedProviders().isEmpty());
+    }
+
+    @Test
+    public void registersWithPlatformServer() throws Exception {
+        // Arrange
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ServiceMonitor monitor = new ServiceMonitor(service);
+        service.getServiceStream().forEach(provider -> { });
+
+        // Act
+        final ObjectName name = monitor.register();
+        final Object instantiated;
+        final Object sourceCount;
+        final Object perSource;
+        try {
+            instantiated = server.getAttribute(name, "ProvidersInstantiated");
+            sourceCount = server.getAttribute(name, "SourceCount");
+            perSource = server.getAttribute(name, "InstantiatedProviders");
+        } finally {
+            monitor.unregister();
+        }
+
+        // Assert
+        assertEquals(metrics.getProvidersInstantiated(), instantiated);
+        assertEquals(1, sourceCount);
+        assertEquals(1, ((TabularData) perSource).size());
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void registerTwice() throws Exception {
+        // Arrange
+        final ServiceMonitor monitor = new ServiceMonitor(service);
+        monitor.register();
+
+        // Act
+        try {
+            monitor.register();
+        } finally {
+            monitor.unregister();
+        }
+
+        // Assert - not needed
+    }
+}
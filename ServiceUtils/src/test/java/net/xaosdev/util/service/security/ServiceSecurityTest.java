@@ -0,0 +1,215 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.security;
+
+import net.xaosdev.util.service.Service;
+import net.xaosdev.util.service.Source;
+import net.xaosdev.util.service.sources.ClassLoaderSource;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import testing.OverrideSecurity;
+import testing.producer.spi.TestService;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.AccessControlContext;
+import java.security.AccessControlException;
+import java.security.AccessController;
+import java.security.CodeSource;
+import java.security.Permission;
+import java.security.Policy;
+import java.security.PrivilegedAction;
+import java.security.ProtectionDomain;
+import java.security.cert.Certificate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ServiceSecurityTest {
+
+    @Rule
+    public OverrideSecurity overrideSecurity = new OverrideSecurity();
+
+    private Service<TestService> service;
+    private Source plugin;
+    private AccessControlContext pluginContext;
+    private volatile boolean pluginAllowed;
+    private AtomicInteger pluginChecks;
+
+    @Before
+    public void setUp() {
+        // Arrange - common
+        service = new Service<>(TestService.class);
+        plugin = new ClassLoaderSource(new URLClassLoader(new URL[0]));
+        pluginContext = new AccessControlContext(new ProtectionDomain[] {
+                new ProtectionDomain(new CodeSource(null, (Certificate[]) null), null, plugin.getClassLoader(), null)
+        });
+        pluginAllowed = true;
+        pluginChecks = new AtomicInteger();
+
+        Security.installWithPolicy(new SourceFilteringPolicy() {
+
+            @Override
+            public boolean implies(final ProtectionDomain domain, final Permission permission) {
+                if (domain.getClassLoader() != plugin.getClassLoader()) {
+                    return true; // make policy liberal, required for Gradle tests
+                }
+                pluginChecks.incrementAndGet();
+                return pluginAllowed;
+            }
+        });
+    }
+
+    @Test
+    public void grantedCallerIsOnlyCheckedOnce() {
+        // Act
+        for (int index = 0; index < 3; index++) {
+            assertEquals(0, countAsPlugin());
+        }
+
+        // Assert
+        assertEquals(1, pluginChecks.get());
+    }
+
+    @Test
+    public void grantedCallerIsRememberedAcrossCollections() {
+        // Arrange
+        countAsPlugin();
+
+        // Act
+        for (int index = 0; index < 3; index++) {
+            System.gc();
+            assertEquals(0, countAsPlugin());
+        }
+
+        // Assert
+        assertEquals(1, pluginChecks.get());
+    }
+
+    @Test
+    public void invalidatedDecisionIsEnforced() {
+        // Arrange
+        countAsPlugin();
+
+        // Act
+        pluginAllowed = false;
+        Security.invalidatePermissionCache();
+
+        // Assert
+        try {
+            countAsPlugin();
+            fail("Revoked permission was still granted.");
+        } catch (AccessControlException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void replacedPolicyIsEnforced() {
+        // Arrange
+        countAsPlugin();
+
+        // Act
+        Policy.setPolicy(new Policy() {
+
+            @Override
+            public boolean implies(final ProtectionDomain domain, final Permission permission) {
+                return domain.getClassLoader() != plugin.getClassLoader();
+            }
+        });
+
+        // Assert
+        try {
+            countAsPlugin();
+            fail("Permission was granted by a replaced Policy.");
+        } catch (AccessControlException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void refreshedPolicyIsEnforced() {
+        // Arrange
+        Policy.setPolicy(new Policy() {
+
+            @Override
+            public boolean implies(final ProtectionDomain domain, final Permission permission) {
+                return domain.getClassLoader() != plugin.getClassLoader() || pluginAllowed;
+            }
+        });
+        countAsPlugin();
+
+        // Act
+        pluginAllowed = false; // as a refresh would, without replacing the Policy or invalidating the cache
+
+        // Assert
+        try {
+            countAsPlugin();
+            fail("Permission revoked by a refreshed Policy was still granted.");
+        } catch (AccessControlException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void customSecurityManagerIsAlwaysConsulted() {
+        // Arrange
+        final AtomicInteger managerChecks = new AtomicInteger();
+        System.setSecurityManager(new SecurityManager() {
+
+            @Override
+            public void checkPermission(final Permission permission) {
+                if (permission instanceof ServiceUtilityPermission) {
+                    managerChecks.incrementAndGet();
+                }
+                super.checkPermission(permission);
+            }
+        });
+
+        // Act
+        for (int index = 0; index < 3; index++) {
+            countAsPlugin();
+        }
+
+        // Assert
+        assertEquals(3, managerChecks.get());
+    }
+
+    @Test
+    public void deniedCallerIsNotRemembered() {
+        // Arrange
+        pluginAllowed = false;
+        try {
+            countAsPlugin();
+            fail("Permission was granted without being held.");
+        } catch (AccessControlException e) {
+            // expected
+        }
+
+        // Act
+        pluginAllowed = true;
+
+        // Assert
+        assertEquals(0, countAsPlugin());
+    }
+
+    private long countAsPlugin() {
+        return AccessController.doPrivileged((PrivilegedAction<Long>) () -> service.getServiceStream().count(),
+                pluginContext);
+    }
+}
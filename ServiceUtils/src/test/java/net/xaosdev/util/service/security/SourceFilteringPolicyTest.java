@@ -17,15 +17,26 @@
 package net.xaosdev.util.service.security;
 
 import net.xaosdev.util.service.Source;
+import net.xaosdev.util.service.sources.ClassLoaderSource;
 import net.xaosdev.util.service.sources.ExtensionsSource;
 import net.xaosdev.util.service.sources.SystemSource;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.FilePermission;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.CodeSource;
 import java.security.Permission;
+import java.security.PermissionCollection;
 import java.security.Permissions;
+import java.security.ProtectionDomain;
+import java.security.cert.Certificate;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -93,6 +104,101 @@ public class SourceFilteringPolicyTest {
         enumerateAndTest(permissions, testingPermissions);
     }
 
+    @Test
+    public void bulkSourcePermissions() {
+        // Arrange
+        final Map<Source, Permissions> grants = new LinkedHashMap<>();
+        for (int index = 0; index < 100; index++) {
+            grants.put(new ClassLoaderSource(new URLClassLoader(new URL[0])), testingPermissions);
+        }
+        final Source revoked = grants.keySet().iterator().next();
+        policy.setPermissions(revoked, new Permissions());
+        grants.put(revoked, null);
+
+        // Act
+        policy.setPermissions(grants);
+
+        // Assert
+        for (Map.Entry<Source, Permissions> grant : grants.entrySet()) {
+            final Permissions permissions = policy.getPermissions(grant.getKey());
+            if (grant.getValue() == null) {
+                assertSame(policy.getDefaultPermissions(), permissions);
+            } else {
+                enumerateAndTest(testingPermissions, permissions);
+            }
+        }
+    }
+
+    @Test
+    public void grantedClassLoaderIsCollectable() throws Exception {
+        // Arrange
+        ClassLoader loader = new URLClassLoader(new URL[0]);
+        final WeakReference<ClassLoader> reference = new WeakReference<>(loader);
+        policy.setPermissions(new ClassLoaderSource(loader), testingPermissions);
+
+        // Act
+        loader = null;
+        for (int attempt = 0; attempt < 50 && reference.get() != null; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        // Assert
+        assertNull(reference.get());
+    }
+
+    @Test
+    public void impliesIsRemembered() {
+        // Arrange
+        final AtomicInteger lookups = new AtomicInteger();
+        final SourceFilteringPolicy counting = new SourceFilteringPolicy() {
+
+            @Override
+            public PermissionCollection getPermissions(final ProtectionDomain domain) {
+                lookups.incrementAndGet();
+                return super.getPermissions(domain);
+            }
+        };
+        final Source source = new ClassLoaderSource(new URLClassLoader(new URL[0]));
+        counting.setPermissions(source, testingPermissions);
+        final ProtectionDomain domain = domainOf(source);
+
+        // Act
+        for (int index = 0; index < 3; index++) {
+            assertTrue(counting.implies(domain, new FilePermission("file", "read")));
+            assertFalse(counting.implies(domain, new FilePermission("file", "write")));
+        }
+
+        // Assert
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void impliesReflectsChanges() {
+        // Arrange
+        final Source source = new ClassLoaderSource(new URLClassLoader(new URL[0]));
+        final ProtectionDomain domain = domainOf(source);
+        final Permission permission = new FilePermission("file", "read");
+        policy.setPermissions(source, testingPermissions);
+        final boolean granted = policy.implies(domain, permission);
+
+        // Act
+        policy.setPermissions(source, new Permissions());
+        final boolean revoked = policy.implies(domain, permission);
+        policy.setPermissions(source, null);
+        policy.setDefaultPermissions(testingPermissions);
+        final boolean defaulted = policy.implies(domain, permission);
+
+        // Assert
+        assertTrue(granted);
+        assertFalse(revoked);
+        assertTrue(defaulted);
+    }
+
+    private static ProtectionDomain domainOf(final Source source) {
+        return new ProtectionDomain(new CodeSource(null, (Certificate[]) null), null, source.getClassLoader(), null);
+    }
+
     private void enumerateAndTest(final Permissions a, final Permissions b) {
         final Enumeration<Permission> enumeration = a.elements();
         while (enumeration.hasMoreElements()) {
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.sources;
+
+import net.xaosdev.util.service.Service;
+import org.junit.Test;
+import testing.producer.spi.TestService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryJarSourceTest {
+
+    private static final String PATH_TO_JAR = "../Test Artifacts/build/exported/Test Impl 1.jar";
+    private static final String SERVICE_ENTRY = "META-INF/services/testing.producer.spi.TestService";
+
+    @Test
+    public void byteArraySource() throws Exception {
+        testSource(new InMemoryJarSource(readJar()));
+    }
+
+    @Test
+    public void directBufferSource() throws Exception {
+        // Arrange
+        final byte[] jar = readJar();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(jar.length + 8);
+        buffer.position(8);
+        buffer.put(jar);
+        buffer.position(8);
+
+        // Act / Assert
+        testSource(new InMemoryJarSource(buffer));
+        assertEquals(8, buffer.position());
+    }
+
+    @Test
+    public void storedEntries() throws Exception {
+        testSource(new InMemoryJarSource(store(readJar())));
+    }
+
+    @Test
+    public void resourcesAreServed() throws Exception {
+        // Arrange
+        final byte[] expected;
+        try (JarFile jar = new JarFile(PATH_TO_JAR)) {
+            expected = readAll(jar.getInputStream(jar.getEntry(SERVICE_ENTRY)));
+        }
+        final InMemoryJarSource source = new InMemoryJarSource(readJar());
+
+        // Act
+        final byte[] actual = readAll(findOwnResource(source).openStream());
+
+        // Assert
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test(expected = ZipException.class)
+    public void invalidBytesAreRejected() throws Exception {
+        new InMemoryJarSource("not a jar file".getBytes("UTF-8"));
+    }
+
+    @Test(expected = ZipException.class)
+    public void signedJarIsRejected() throws Exception {
+        new InMemoryJarSource(withEntry(readJar(), "META-INF/SIGNER.SF", new byte[0]));
+    }
+
+    @Test
+    public void manifestAttributesAreApplied() throws Exception {
+        // Arrange
+        final String manifest = "Manifest-Version: 1.0\r\nImplementation-Version: 1.2.3\r\nSealed: true\r\n\r\n";
+        final ClassLoader spiOnly = new ClassLoader(null) { // the provider package is already defined on the classpath
+
+            @Override
+            protected Class<?> findClass(final String name) throws ClassNotFoundException {
+                return TestService.class.getName().equals(name) ? TestService.class : super.findClass(name);
+            }
+        };
+        final InMemoryJarSource source = new InMemoryJarSource(
+                withEntry(readJar(), "META-INF/MANIFEST.MF", manifest.getBytes("UTF-8")), spiOnly);
+        final Service<TestService> service = new Service<>(TestService.class);
+        service.addSource(source);
+
+        // Act
+        final Package definedPackage = service.getFirst().get().getClass().getPackage();
+
+        // Assert
+        assertEquals("1.2.3", definedPackage.getImplementationVersion());
+        assertTrue(definedPackage.isSealed());
+    }
+
+    @Test
+    public void closedSourceServesNothing() throws Exception {
+        // Arrange
+        final InMemoryJarSource source = new InMemoryJarSource(readJar());
+        final Service<TestService> service = new Service<>(TestService.class);
+        service.addSource(source);
+
+        // Act
+        service.removeSource(source);
+
+        // Assert
+        assertNull(findOwnResource(source));
+        assertEquals(0, service.getServiceStream().count());
+    }
+
+    private void testSource(final InMemoryJarSource source) {
+        // Arrange
+        final Service<TestService> service = new Service<>(TestService.class);
+        service.addSource(source);
+
+        // Act / Assert
+        assertEquals(1, service.getServiceStream().count());
+        service.getServiceStream().forEach((impl) -> {
+            assert(impl.returnTrue());
+            assertSame(source.getClassLoader(), impl.getClass().getClassLoader());
+            assertNotNull(impl.getClass().getPackage());
+        });
+    }
+
+    private static URL findOwnResource(final InMemoryJarSource source) throws Exception {
+        for (URL url : Collections.list(source.getClassLoader().getResources(SERVICE_ENTRY))) {
+            if (source.contains(url)) {
+                return url;
+            }
+        }
+        return null;
+    }
+
+    private static byte[] readJar() throws Exception {
+        return Files.readAllBytes(new File(PATH_TO_JAR).toPath());
+    }
+
+    private static byte[] readAll(final InputStream in) throws Exception {
+        try (InputStream input = in) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] store(final byte[] jar) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(jar));
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                final byte[] data = readAll(new NonClosingStream(in));
+                final CRC32 crc = new CRC32();
+                crc.update(data);
+                final ZipEntry stored = new ZipEntry(entry.getName());
+                stored.setMethod(ZipEntry.STORED);
+                stored.setSize(data.length);
+                stored.setCompressedSize(data.length);
+                stored.setCrc(crc.getValue());
+                zip.putNextEntry(stored);
+                zip.write(data);
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] withEntry(final byte[] jar, final String name, final byte[] data) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(jar));
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (!entry.getName().equals(name)) {
+                    zip.putNextEntry(new ZipEntry(entry.getName()));
+                    zip.write(readAll(new NonClosingStream(in)));
+                    zip.closeEntry();
+                }
+            }
+            zip.putNextEntry(new ZipEntry(name));
+            zip.write(data);
+            zip.closeEntry();
+        }
+        return out.toByteArray();
+    }
+
+    private static final class NonClosingStream extends java.io.FilterInputStream {
+        private NonClosingStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {}
+    }
+}
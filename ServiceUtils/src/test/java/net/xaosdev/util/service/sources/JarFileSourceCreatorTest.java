@@ -22,9 +22,19 @@ import org.junit.Test;
 import testing.producer.spi.TestService;
 
 import java.io.File;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -98,6 +108,168 @@ public class JarFileSourceCreatorTest {
         assertNull(JarFileSourceCreator.tryCreateSourceFromFilesInDirectory(file, true));
     }
 
+    @Test
+    public void tryCreateSourceFromFilesInDirectoryAsync() throws Exception {
+        // Arrange
+        final File file = new File(TO_EXPORTED_DIR);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final AtomicInteger callbacks = new AtomicInteger();
+
+        // Act
+        final List<Source> sources;
+        final List<Source> recursed;
+        try {
+            sources = JarFileSourceCreator.tryCreateSourceFromFilesInDirectoryAsync(
+                    file, false, executor, 2, source -> callbacks.incrementAndGet()).get(10, TimeUnit.SECONDS);
+            recursed = JarFileSourceCreator.tryCreateSourceFromFilesInDirectoryAsync(
+                    file, true, getClass().getClassLoader(), executor, 2, null).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Assert
+        assertEquals(2, sources.size());
+        assertEquals(2, callbacks.get());
+        testSources(sources);
+        assertEquals(3, recursed.size());
+        testSources(recursed);
+    }
+
+    @Test
+    public void tryCreateSourceFromFilesInDirectoryAsyncBoundsIo() throws Exception {
+        // Arrange
+        final File file = new File(TO_EXPORTED_DIR);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        JarFileSourceCreator.setValidationStrategy(jar -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+                return StandardJarValidationStrategy.CENTRAL_DIRECTORY.validate(jar);
+            } catch (InterruptedException e) {
+                return null;
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+
+        // Act
+        final List<Source> sources;
+        try {
+            sources = JarFileSourceCreator.tryCreateSourceFromFilesInDirectoryAsync(
+                    file, true, executor, 2, null).get(10, TimeUnit.SECONDS);
+        } finally {
+            JarFileSourceCreator.setValidationStrategy(StandardJarValidationStrategy.CENTRAL_DIRECTORY);
+            executor.shutdown();
+        }
+
+        // Assert
+        assertEquals(3, sources.size());
+        assert(maxActive.get() <= 2);
+    }
+
+    @Test
+    public void tryCreateSourceFromFilesInDirectoryAsyncFails() throws Exception {
+        // Arrange
+        final File file = new File(IMPL_1);
+
+        // Act / Assert
+        assertNull(JarFileSourceCreator.tryCreateSourceFromFilesInDirectoryAsync(
+                file, true, Runnable::run, 1, null).get());
+    }
+
+    @Test
+    public void tryCreateSourceFromFilesInDirectoryAsyncRejected() throws Exception {
+        // Arrange
+        final File file = new File(TO_EXPORTED_DIR);
+        final List<Runnable> accepted = new ArrayList<>();
+        final Executor executor = task -> {
+            if (!accepted.isEmpty()) {
+                throw new RejectedExecutionException();
+            }
+            accepted.add(task);
+        };
+        final AtomicInteger created = new AtomicInteger();
+
+        // Act
+        final CompletableFuture<List<Source>> future = JarFileSourceCreator.tryCreateSourceFromFilesInDirectoryAsync(
+                file, true, executor, 2, source -> created.incrementAndGet());
+        accepted.forEach(Runnable::run);
+
+        // Assert
+        try {
+            future.get();
+            fail("A rejected scan completed normally.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        assertEquals(0, created.get());
+    }
+
+    @Test
+    public void tryCreateSharedSourcesFromFilesInDirectory() {
+        // Arrange
+        final File file = new File(TO_EXPORTED_DIR);
+        final List<Source> sources = JarFileSourceCreator.tryCreateSharedSourcesFromFilesInDirectory(file, true);
+
+        // Act / Assert
+        assertEquals(3, sources.size());
+        sources.forEach(source -> assertSame(sources.get(0).getClassLoader(), source.getClassLoader()));
+        testSources(sources);
+    }
+
+    @Test
+    public void sharedSourcesAreRemovedIndividually() {
+        // Arrange
+        final File file = new File(TO_EXPORTED_DIR);
+        final List<Source> sources = JarFileSourceCreator.tryCreateSharedSourcesFromFilesInDirectory(file, true);
+        final Service<TestService> service = new Service<>(TestService.class);
+        sources.forEach(service::addSource);
+        final URLClassLoader classLoader = (URLClassLoader) sources.get(0).getClassLoader();
+        final String entry = "META-INF/services/" + TestService.class.getName();
+
+        // Act
+        service.removeSource(sources.get(0));
+        final long remaining = service.getServiceStream().count();
+        final boolean openWhileShared = classLoader.findResource(entry) != null;
+        service.close();
+
+        // Assert
+        assertEquals(2, remaining);
+        assertTrue(openWhileShared);
+        assertNull(classLoader.findResource(entry));
+    }
+
+    @Test
+    public void tryCreateSharedSourcesFromFilesInDirectoryFails() {
+        // Arrange
+        final File file = new File(IMPL_1);
+
+        // Act Assert
+        assertNull(JarFileSourceCreator.tryCreateSharedSourcesFromFilesInDirectory(file, true));
+    }
+
+    @Test
+    public void createdSourcesCarryPriority() {
+        // Arrange
+        final ClassLoader parent = getClass().getClassLoader();
+        final File dir = new File(TO_EXPORTED_DIR);
+
+        // Act
+        final Source single = JarFileSourceCreator.tryCreateSourceFromFile(new File(IMPL_1), parent, 5);
+        final List<Source> sources = JarFileSourceCreator.tryCreateSourceFromFilesInDirectory(dir, true, parent, 5);
+        final List<Source> shared = JarFileSourceCreator.tryCreateSharedSourcesFromFilesInDirectory(dir, true, parent,
+                5);
+
+        // Assert
+        assertEquals(5, single.getPriority());
+        assertEquals(3, sources.size());
+        sources.forEach(source -> assertEquals(5, source.getPriority()));
+        assertEquals(3, shared.size());
+        shared.forEach(source -> assertEquals(5, source.getPriority()));
+    }
+
     private void testSources(final List<Source> sources) {
         final Service<TestService> service = new Service<>(TestService.class);
         sources.forEach(service::addSource);
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.sources;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class JarValidationCacheTest {
+
+    private static final String IMPL_1 = "../Test Artifacts/build/exported/Test Impl 1.jar";
+    private static final String NO_META_INF = "../Test Artifacts/build/exported/noMetaInf.jar";
+
+    private Path directory;
+    private File jar;
+    private File cacheFile;
+
+    @Before
+    public void setUp() throws Exception {
+        // Arrange - common
+        directory = Files.createTempDirectory("validation-cache");
+        jar = directory.resolve("plugin.jar").toFile();
+        Files.copy(new File(IMPL_1).toPath(), jar.toPath());
+        cacheFile = directory.resolve("validation.cache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        JarFileSourceCreator.setValidationCache(null);
+    }
+
+    @Test
+    public void recordsValidation() {
+        // Arrange
+        final JarValidationCache cache = new JarValidationCache(cacheFile);
+        JarFileSourceCreator.setValidationCache(cache);
+
+        // Act
+        assertNotNull(JarFileSourceCreator.tryCreateSourceFromFile(jar));
+
+        // Assert
+        final JarValidationCache.Entry entry = cache.lookup(jar);
+        assertNotNull(entry);
+        assert(entry.valid);
+    }
+
+    @Test
+    public void persistsAcrossInstances() throws Exception {
+        // Arrange
+        final JarValidationCache cache = new JarValidationCache(cacheFile);
+        JarFileSourceCreator.setValidationCache(cache);
+        JarFileSourceCreator.tryCreateSourceFromFile(jar);
+
+        // Act
+        cache.save();
+        final JarValidationCache reloaded = new JarValidationCache(cacheFile);
+
+        // Assert
+        final JarValidationCache.Entry entry = reloaded.lookup(jar);
+        assertNotNull(entry);
+        assert(entry.valid);
+    }
+
+    @Test
+    public void unchangedJarIsNotReopened() throws Exception {
+        // Arrange
+        JarFileSourceCreator.setValidationCache(new JarValidationCache(cacheFile));
+        JarFileSourceCreator.tryCreateSourceFromFile(jar);
+        corruptKeepingSizeAndTime(jar);
+
+        // Act
+        final boolean validated = JarFileSourceCreator.tryCreateSourceFromFile(jar) != null;
+
+        // Assert
+        assert(validated);
+    }
+
+    @Test
+    public void hashedJarDetectsChangedContents() throws Exception {
+        // Arrange
+        JarFileSourceCreator.setValidationCache(new JarValidationCache(cacheFile, true));
+        JarFileSourceCreator.tryCreateSourceFromFile(jar);
+        corruptKeepingSizeAndTime(jar);
+
+        // Act
+        final boolean validated = JarFileSourceCreator.tryCreateSourceFromFile(jar) != null;
+
+        // Assert
+        assertFalse(validated);
+    }
+
+    @Test
+    public void modifiedJarIsRevalidated() throws Exception {
+        // Arrange
+        final JarValidationCache cache = new JarValidationCache(cacheFile);
+        JarFileSourceCreator.setValidationCache(cache);
+        JarFileSourceCreator.tryCreateSourceFromFile(jar);
+
+        // Act
+        Files.copy(new File(NO_META_INF).toPath(), jar.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        // Assert
+        assertNull(cache.lookup(jar));
+        assertNull(JarFileSourceCreator.tryCreateSourceFromFile(jar));
+    }
+
+    @Test
+    public void corruptCacheFileIsIgnored() throws Exception {
+        // Arrange
+        Files.write(cacheFile.toPath(), Collections.singletonList("not a cache"));
+
+        // Act
+        final JarValidationCache cache = new JarValidationCache(cacheFile);
+
+        // Assert
+        assertNull(cache.lookup(jar));
+    }
+
+    @Test
+    public void jarReplacedDuringValidationIsRevalidated() throws Exception {
+        // Arrange
+        final JarValidationCache cache = new JarValidationCache(cacheFile);
+        JarFileSourceCreator.setValidationCache(cache);
+        JarFileSourceCreator.setValidationStrategy(file -> {
+            final List<String> services = StandardJarValidationStrategy.CENTRAL_DIRECTORY.validate(file);
+            try {
+                Files.copy(new File(NO_META_INF).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return services;
+        });
+
+        // Act
+        try {
+            JarFileSourceCreator.tryCreateSourceFromFile(jar);
+        } finally {
+            JarFileSourceCreator.setValidationStrategy(StandardJarValidationStrategy.CENTRAL_DIRECTORY);
+        }
+
+        // Assert
+        assertNull(cache.lookup(jar));
+        assertNull(JarFileSourceCreator.tryCreateSourceFromFile(jar));
+    }
+
+    @Test
+    public void saveDropsMissingJars() throws Exception {
+        // Arrange
+        final JarValidationCache cache = new JarValidationCache(cacheFile);
+        JarFileSourceCreator.setValidationCache(cache);
+        JarFileSourceCreator.tryCreateSourceFromFile(jar);
+        final File renamed = directory.resolve("renamed.jar").toFile();
+        Files.move(jar.toPath(), renamed.toPath());
+
+        // Act
+        cache.save();
+        Files.move(renamed.toPath(), jar.toPath());
+        final JarValidationCache reloaded = new JarValidationCache(cacheFile);
+
+        // Assert
+        assertNull(reloaded.lookup(jar));
+    }
+
+    @Test
+    public void failedSaveLeavesNoTemporaryFile() throws Exception {
+        // Arrange
+        Files.createDirectories(cacheFile.toPath().resolve("occupied"));
+        final JarValidationCache cache = new JarValidationCache(cacheFile);
+
+        // Act
+        try {
+            cache.save();
+            fail("Cache was saved over a non-empty directory.");
+        } catch (IOException e) {
+            // expected
+        }
+
+        // Assert
+        try (Stream<Path> files = Files.list(directory)) {
+            assertFalse(files.anyMatch(path -> path.toString().endsWith(".tmp")));
+        }
+    }
+
+    private static void corruptKeepingSizeAndTime(final File file) throws Exception {
+        final long lastModified = file.lastModified();
+        Files.write(file.toPath(), new byte[(int) file.length()]);
+        assertTrue(file.setLastModified(lastModified));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.sources;
+
+import net.xaosdev.util.service.Service;
+import org.junit.Test;
+import testing.producer.spi.TestService;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MappedJarSourceTest {
+
+    private static final String TO_EXPORTED_DIR = "../Test Artifacts/build/exported";
+    private static final File IMPL_1 = new File(TO_EXPORTED_DIR + "/Test Impl 1.jar");
+    private static final File NOT_A_JAR = new File(TO_EXPORTED_DIR + "/notAJarFile.txt");
+    private static final String SERVICE_ENTRY = "META-INF/services/testing.producer.spi.TestService";
+    private static final String IMPL_CLASS = "testing.consumer.impl.TestServiceImpl1";
+
+    @Test
+    public void mappedSource() throws Exception {
+        // Arrange
+        final MappedJarSource source = new MappedJarSource(IMPL_1);
+        final Service<TestService> service = new Service<>(TestService.class);
+        service.addSource(source);
+
+        // Act / Assert
+        assertEquals(1, service.getServiceStream().count());
+        service.getServiceStream().forEach((impl) -> {
+            assert(impl.returnTrue());
+            assertSame(source.getClassLoader(), impl.getClass().getClassLoader());
+        });
+    }
+
+    @Test
+    public void codeSourceIsTheJarFile() throws Exception {
+        // Arrange
+        final MappedJarSource source = new MappedJarSource(IMPL_1);
+
+        // Act
+        final URL location = source.getClassLoader().loadClass(IMPL_CLASS)
+                .getProtectionDomain().getCodeSource().getLocation();
+
+        // Assert
+        assertEquals(IMPL_1.toURI().toURL(), location);
+        assertTrue(source.contains(location));
+    }
+
+    @Test
+    public void concurrentLoadsDefineOneClass() throws Exception {
+        // Arrange
+        final MappedJarSource source = new MappedJarSource(IMPL_1);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<Callable<Class<?>>> loads = IntStream.range(0, 32)
+                .<Callable<Class<?>>>mapToObj(index -> () -> source.getClassLoader().loadClass(IMPL_CLASS))
+                .collect(Collectors.toList());
+
+        // Act
+        final List<Future<Class<?>>> results;
+        try {
+            results = executor.invokeAll(loads);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Assert
+        final Class<?> expected = results.get(0).get();
+        for (Future<Class<?>> result : results) {
+            assertSame(expected, result.get());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidFileIsRejected() throws Exception {
+        new MappedJarSource(NOT_A_JAR);
+    }
+
+    @Test
+    public void closedSourceServesNothing() throws Exception {
+        // Arrange
+        final MappedJarSource source = new MappedJarSource(IMPL_1);
+
+        // Act
+        source.close();
+
+        // Assert
+        for (URL url : Collections.list(source.getClassLoader().getResources(SERVICE_ENTRY))) {
+            assertFalse(source.contains(url));
+        }
+        try {
+            source.getClassLoader().loadClass(IMPL_CLASS);
+            fail("Class loaded from a closed source.");
+        } catch (ClassNotFoundException e) {
+            // expected
+        }
+    }
+}
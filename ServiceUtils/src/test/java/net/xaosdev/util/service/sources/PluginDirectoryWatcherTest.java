@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.sources;
+
+import net.xaosdev.util.service.Service;
+import net.xaosdev.util.service.ServiceEvent;
+import net.xaosdev.util.service.Source;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import testing.producer.spi.TestService;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class PluginDirectoryWatcherTest {
+
+    private static final String IMPL_1 = "../Test Artifacts/build/exported/Test Impl 1.jar";
+    private static final String IMPL_2 = "../Test Artifacts/build/exported/Test Impl 2.jar";
+    private static final String BAD_ARTIFACT = "../Test Artifacts/build/exported/notAJarFile.txt";
+
+    private static final long TIMEOUT_MILLIS = 30000;
+
+    private Path directory;
+    private Service<TestService> service;
+    private PluginDirectoryWatcher watcher;
+
+    @Before
+    public void setUp() throws Exception {
+        // Arrange - common
+        directory = Files.createTempDirectory("plugin-watcher");
+        Files.copy(new File(IMPL_1).toPath(), directory.resolve("first.jar"));
+        Files.copy(new File(BAD_ARTIFACT).toPath(), directory.resolve("readme.txt"));
+        service = new Service<>(TestService.class);
+        watcher = new PluginDirectoryWatcher(service, directory.toFile());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        watcher.close();
+    }
+
+    @Test
+    public void startScansDirectory() throws Exception {
+        // Act
+        watcher.start();
+
+        // Assert
+        assertEquals(1, service.getSources().size());
+        assertEquals(1, watcher.getSources().size());
+        assertEquals(1, service.getServiceStream().count());
+    }
+
+    @Test
+    public void addedJarIsAdded() throws Exception {
+        // Arrange
+        watcher.start();
+
+        // Act
+        Files.copy(new File(IMPL_2).toPath(), directory.resolve("second.jar"));
+
+        // Assert
+        await(() -> service.getSources().size() == 2);
+        assertEquals(2, service.getServiceStream().count());
+    }
+
+    @Test
+    public void deletedJarIsRemoved() throws Exception {
+        // Arrange
+        watcher.start();
+
+        // Act
+        Files.delete(directory.resolve("first.jar"));
+
+        // Assert
+        await(() -> service.getSources().isEmpty());
+        assertTrue(watcher.getSources().isEmpty());
+    }
+
+    @Test
+    public void replacedJarIsReplaced() throws Exception {
+        // Arrange
+        watcher.start();
+        final Source original = service.getSources().iterator().next();
+        final Path staged = Files.createTempFile(directory.getParent(), "staged", ".jar");
+        Files.copy(new File(IMPL_2).toPath(), staged, StandardCopyOption.REPLACE_EXISTING);
+
+        // Act
+        Files.move(staged, directory.resolve("first.jar"), StandardCopyOption.REPLACE_EXISTING);
+
+        // Assert
+        await(() -> service.getSources().size() == 1 && !service.getSources().contains(original));
+        assertEquals(1, service.getServiceStream().count());
+    }
+
+    @Test
+    public void throwingListenerDoesNotStopWatching() throws Exception {
+        // Arrange
+        watcher.start();
+        service.addListener(event -> {
+            if (event.getType() == ServiceEvent.Type.SOURCE_ADDED) {
+                throw new IllegalStateException("Listener failure");
+            }
+        });
+
+        // Act
+        Files.copy(new File(IMPL_2).toPath(), directory.resolve("second.jar"));
+        await(() -> watcher.getSources().size() == 2);
+        Files.delete(directory.resolve("second.jar"));
+
+        // Assert
+        await(() -> service.getSources().size() == 1);
+        assertEquals(1, watcher.getSources().size());
+    }
+
+    @Test
+    public void closeStopsWatching() throws Exception {
+        // Arrange
+        watcher.start();
+
+        // Act
+        watcher.close();
+        Files.delete(directory.resolve("first.jar"));
+        Thread.sleep(200);
+
+        // Assert
+        assertEquals(1, service.getSources().size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void startTwiceFails() throws Exception {
+        // Act
+        watcher.start();
+        watcher.start();
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Condition was not met in time.");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
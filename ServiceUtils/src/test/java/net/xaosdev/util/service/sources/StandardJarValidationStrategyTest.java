@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 Cornelia Ada Schultz
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.xaosdev.util.service.sources;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class StandardJarValidationStrategyTest {
+
+    private static final String TO_EXPORTED_DIR = "../Test Artifacts/build/exported";
+    private static final File IMPL_1 = new File(TO_EXPORTED_DIR + "/Test Impl 1.jar");
+    private static final File NOT_A_JAR = new File(TO_EXPORTED_DIR + "/notAJarFile.txt");
+    private static final File FAKE_JAR = new File(TO_EXPORTED_DIR + "/fakeJarFile.jar");
+    private static final File NO_META_INF = new File(TO_EXPORTED_DIR + "/noMetaInf.jar");
+
+    private static final String SERVICE_ENTRY = "META-INF/services/testing.producer.spi.TestService";
+
+    @Test
+    public void magicNumber() {
+        // Arrange
+        final JarValidationStrategy strategy = StandardJarValidationStrategy.MAGIC_NUMBER;
+
+        // Act / Assert
+        assertNotNull(strategy.validate(IMPL_1));
+        assertNotNull(strategy.validate(NO_META_INF)); // a zip archive, services are not inspected
+        assertNull(strategy.validate(NOT_A_JAR));
+        assertNull(strategy.validate(FAKE_JAR));
+    }
+
+    @Test
+    public void zipFile() {
+        testInspectingStrategy(StandardJarValidationStrategy.ZIP_FILE);
+    }
+
+    @Test
+    public void centralDirectory() {
+        testInspectingStrategy(StandardJarValidationStrategy.CENTRAL_DIRECTORY);
+    }
+
+    @Test
+    public void centralDirectoryMatchesZipFile() {
+        // Arrange
+        final List<String> expected = StandardJarValidationStrategy.ZIP_FILE.validate(IMPL_1);
+
+        // Act
+        final List<String> actual = StandardJarValidationStrategy.CENTRAL_DIRECTORY.validate(IMPL_1);
+
+        // Assert
+        assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+    }
+
+    @Test
+    public void centralDirectoryBeforeLongCommentIsRead() throws Exception {
+        // Arrange
+        final File jar = File.createTempFile("commented", ".jar");
+        final char[] comment = new char[0xFFFF - 8];
+        Arrays.fill(comment, 'c');
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar))) {
+            zip.putNextEntry(new ZipEntry(SERVICE_ENTRY));
+            zip.write("testing.consumer.impl.TestServiceImpl1".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            zip.setComment(new String(comment));
+        }
+
+        // Act
+        final List<String> entries;
+        try {
+            entries = StandardJarValidationStrategy.CENTRAL_DIRECTORY.validate(jar);
+        } finally {
+            assertTrue(jar.delete());
+        }
+
+        // Assert
+        assertEquals(Collections.singletonList(SERVICE_ENTRY), entries);
+    }
+
+    @Test
+    public void customStrategy() {
+        // Arrange
+        JarFileSourceCreator.setValidationStrategy(file -> null);
+
+        // Act
+        final boolean created;
+        try {
+            created = JarFileSourceCreator.tryCreateSourceFromFile(IMPL_1) != null;
+        } finally {
+            JarFileSourceCreator.setValidationStrategy(StandardJarValidationStrategy.CENTRAL_DIRECTORY);
+        }
+
+        // Assert
+        assertFalse(created);
+    }
+
+    private void testInspectingStrategy(final JarValidationStrategy strategy) {
+        // Act
+        final List<String> entries = strategy.validate(IMPL_1);
+
+        // Assert
+        assertNotNull(entries);
+        assert(entries.contains(SERVICE_ENTRY));
+        assertNull(strategy.validate(NO_META_INF));
+        assertNull(strategy.validate(NOT_A_JAR));
+        assertNull(strategy.validate(FAKE_JAR));
+    }
+}
@@ -16,17 +16,28 @@
 
 package net.xaosdev.util.service.sources;
 
+import net.xaosdev.util.service.Scope;
 import net.xaosdev.util.service.Service;
 import org.junit.Test;
+import testing.consumer.impl.TestServiceImpl;
 import testing.producer.spi.TestService;
 
 import java.io.File;
+import java.lang.ref.WeakReference;
+import java.net.URLClassLoader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 public class URLSourceTest {
 
     private static final String PATH_TO_EXPORTED = "../Test Artifacts/build";
     private static final String PATH_TO_JAR = PATH_TO_EXPORTED + "/exported/Test Impl 1.jar";
     private static final String PATH_TO_DIR = PATH_TO_EXPORTED + "/classes/";
+    private static final String SERVICE_ENTRY = "META-INF/services/testing.producer.spi.TestService";
 
     @Test
     public void jarFileURLSourceTest() throws Exception {
@@ -38,6 +49,104 @@ public class URLSourceTest {
         testSource(PATH_TO_DIR);
     }
 
+    @Test
+    public void parentProvidersAreNotInstantiated() throws Exception {
+        // Arrange
+        final URLSource source = new URLSource(new File(PATH_TO_JAR).toURI().toURL());
+        final Service<TestService> service = new Service<>(TestService.class);
+        service.addSource(source);
+        final int instances = TestServiceImpl.INSTANCES.get();
+
+        // Act
+        final long count = service.getServiceStream().count();
+
+        // Assert
+        assertEquals(1, count);
+        assertEquals(instances, TestServiceImpl.INSTANCES.get());
+    }
+
+    @Test
+    public void prioritizedSourceIsPreferred() throws Exception {
+        // Arrange
+        final ClassLoader parent = getClass().getClassLoader();
+        final URLSource deferred = new URLSource(new File(PATH_TO_JAR).toURI().toURL(), parent, -10);
+        final URLSource preferred = new URLSource(new File(PATH_TO_JAR).toURI().toURL(), parent, 10);
+        final Service<TestService> service = new Service<>(TestService.class);
+        service.addSource(deferred);
+        service.addSource(preferred);
+
+        // Act
+        final TestService best = service.getBest().get();
+
+        // Assert
+        assertEquals(10, preferred.getPriority());
+        assertSame(preferred.getClassLoader(), best.getClass().getClassLoader());
+    }
+
+    @Test
+    public void removedSourceIsClosed() throws Exception {
+        // Arrange
+        final URLSource source = new URLSource(new File(PATH_TO_JAR).toURI().toURL());
+        final Service<TestService> service = new Service<>(TestService.class);
+        service.addSource(source);
+        service.getServiceStream().count();
+
+        // Act
+        service.removeSource(source);
+
+        // Assert
+        assertNull(((URLClassLoader) source.getClassLoader()).findResource(SERVICE_ENTRY));
+    }
+
+    @Test
+    public void removedSourceIsCollectable() throws Exception {
+        // Arrange
+        final Service<TestService> service = new Service<>(TestService.class);
+
+        // Act
+        final WeakReference<ClassLoader> loader = addUseAndRemove(service);
+        awaitCollection(loader);
+
+        // Assert
+        assertNull(loader.get());
+    }
+
+    @Test
+    public void removedThreadScopedSourceIsCollectable() throws Exception {
+        // Arrange
+        final Service<TestService> service = new Service<>(TestService.class, Scope.THREAD);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // Act
+        final WeakReference<ClassLoader> loader;
+        try {
+            loader = executor.submit(() -> addUseAndRemove(service)).get();
+            awaitCollection(loader); // the thread that created the instances is still running
+        } finally {
+            executor.shutdown();
+        }
+
+        // Assert
+        assertNull(loader.get());
+    }
+
+    private WeakReference<ClassLoader> addUseAndRemove(final Service<TestService> service) throws Exception {
+        final URLSource source = new URLSource(new File(PATH_TO_JAR).toURI().toURL());
+        service.addSource(source);
+        service.getServiceStream().forEach((impl) -> {
+            assert(impl.returnTrue());
+        });
+        service.removeSource(source);
+        return new WeakReference<>(source.getClassLoader());
+    }
+
+    private void awaitCollection(final WeakReference<?> reference) throws InterruptedException {
+        for (int attempt = 0; attempt < 50 && reference.get() != null; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+    }
+
     private void testSource(final String path) throws Exception {
         // Arrange
         final File file = new File(path);
@@ -18,8 +18,16 @@ package testing.consumer.impl;
 
 import testing.producer.spi.TestService;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class TestServiceImpl implements TestService {
 
+    public static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    public TestServiceImpl() {
+        INSTANCES.incrementAndGet();
+    }
+
     @Override
     public boolean returnTrue() {
         return true;